@@ -20,8 +20,8 @@ public class ChatClient {
     public void start() {
         // Usa try-with-resources para garantir que os Sockets e Streams sejam fechados automaticamente
         try (Socket socket = new Socket(SERVER_IP, SERVER_PORT); // Conecta-se ao servidor
-             ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream()); // Stream para enviar objetos
-             ObjectInputStream in = new ObjectInputStream(socket.getInputStream())) { // Stream para receber objetos
+             DataOutputStream out = new DataOutputStream(socket.getOutputStream()); // Stream para enviar quadros (MensagemCodec)
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) { // Stream para receber quadros
 
             setupUsername(out); // Configura o nome de usuário e o envia ao servidor
             // Inicia uma nova thread para receber mensagens do servidor de forma assíncrona
@@ -34,16 +34,16 @@ public class ChatClient {
     }
 
     // Método para obter o nome de usuário e enviá-lo como primeira mensagem ao servidor
-    private void setupUsername(ObjectOutputStream out) throws IOException {
+    private void setupUsername(DataOutputStream out) throws IOException {
         Scanner scanner = new Scanner(System.in); // Cria um Scanner para ler do console
         System.out.print("Digite seu nome de usuário: "); // Solicita o nome
         username = scanner.nextLine(); // Lê o nome digitado
         // Envia uma mensagem de "login" para o servidor com o nome de usuário
-        out.writeObject(new Mensagem(username, null, "")); // Destinatário null, conteúdo vazio (só para identificação)
+        MensagemCodec.write(out, new Mensagem(username, null, "")); // Destinatário null, conteúdo vazio (só para identificação)
     }
 
     // Método para ler mensagens do console e enviá-las ao servidor
-    private void sendMessages(ObjectOutputStream out) {
+    private void sendMessages(DataOutputStream out) {
         // Usa try-with-resources para o Scanner
         try (Scanner scanner = new Scanner(System.in)) {
             while (true) { // Loop infinito para continuar lendo e enviando mensagens
@@ -89,7 +89,11 @@ public class ChatClient {
                     msg = new Mensagem(username, null, input); // Destinatário null indica broadcast
                 }
 
-                out.writeObject(msg); // Envia o objeto Mensagem para o servidor
+                if (!MensagemCodec.fits(msg)) { // O servidor recusaria o quadro
+                    System.out.println("[CLIENTE] Mensagem grande demais (máximo de " + MensagemCodec.MAX_FRAME / 1024 + " KB). Não foi enviada.");
+                    continue;
+                }
+                MensagemCodec.write(out, msg); // Envia a Mensagem para o servidor
             }
         } catch (Exception e) { // Captura qualquer exceção durante o envio
             System.err.println("Erro ao enviar mensagem: " + e.getMessage());
@@ -101,10 +105,10 @@ public class ChatClient {
     // Classe interna que implementa Runnable para ser executada em uma nova thread
     // Responsável por receber mensagens do servidor continuamente
     private class MessageReceiver implements Runnable {
-        private ObjectInputStream in; // Stream de entrada para ler objetos do servidor
+        private DataInputStream in; // Stream de entrada para ler quadros do servidor
 
         // Construtor que recebe o stream de entrada
-        public MessageReceiver(ObjectInputStream in) {
+        public MessageReceiver(DataInputStream in) {
             this.in = in;
         }
 
@@ -113,14 +117,14 @@ public class ChatClient {
             try {
                 while (true) { // Loop infinito para continuar recebendo mensagens
                     // Lê um objeto Mensagem do servidor (bloqueia até receber)
-                    Mensagem msg = (Mensagem) in.readObject();
+                    Mensagem msg = MensagemCodec.read(in);
                     // Imprime a mensagem no console. O método toString() da classe Mensagem
                     // deve formatar a mensagem adequadamente (incluindo remetente, timestamp, etc.).
                     System.out.println(msg);
                 }
             } catch (EOFException | SocketException e) { // Exceções comuns de desconexão
                  System.err.println("Conexão com o servidor perdida ou fechada.");
-            } catch (IOException | ClassNotFoundException e) { // Outros erros de I/O ou de classe
+            } catch (IOException e) { // Outros erros de I/O ou quadros inválidos
                 System.err.println("Erro ao receber mensagem: " + e.getMessage());
             } catch (Exception e) { // Captura genérica para outros erros inesperados
                 System.err.println("Erro inesperado no recebimento: " + e.getMessage());
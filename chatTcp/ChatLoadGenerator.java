@@ -0,0 +1,246 @@
+package chatTcp;
+
+import java.io.*; // Streams dos sockets dos usuários simulados
+import java.net.Socket;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Gerador de carga sem interface para o ChatServer: simula milhares de usuários e mede a latência de entrega.
+//
+// Uso: java chatTcp.ChatLoadGenerator [--host=localhost] [--porta=12345] [--usuarios=1000] [--taxa-login=500]
+//        [--taxa=200] [--privadas=0.2] [--salas=0] [--tamanho=64] [--aquecimento=10] [--duracao=30] [--espera=3]
+//
+// - Cada usuário tem seu socket e uma thread leitora (virtual no JDK 21+, ver ChatServer.handlerThreads) e faz
+//   o mesmo login dos clientes: a primeira Mensagem traz o nome. O aviso "X entrou na sala #geral" que o servidor
+//   manda de volta confirma o login.
+// - Com --salas=N, cada usuário entra numa sala "carga-K" (K = índice % N), que passa a ser a sala atual:
+//   o fan-out de uma mensagem pública fica do tamanho da sala em vez do servidor inteiro.
+// - Carga em laço aberto: --taxa mensagens/s no total, em horários fixos, de usuários sorteados; a fração --privadas
+//   vai como /privado: para outro usuário sorteado, o resto é mensagem pública para a sala atual.
+// - Cada mensagem leva no conteúdo a execução, a fase e o horário PLANEJADO de envio (System.nanoTime(), o mesmo
+//   relógio para todos os usuários, que estão nesta JVM). Quem recebe calcula a latência de entrega a partir dele;
+//   usar o horário planejado faz um gerador atrasado aparecer como latência, em vez de esconder o atraso.
+//
+// Fases: login, aquecimento e medição. No fim (depois de --espera segundos para as últimas entregas) mostra, por
+// fase e tipo de mensagem, vazão de envio e de entrega e a latência p50/p99/p99.9/máx.
+public class ChatLoadGenerator {
+    private static final String[] PHASES = {"login", "aquecimento", "medicao"};
+    private static final int LOGIN = 0, WARMUP = 1, MEASURE = 2;
+    // Prefixo das mensagens geradas: "carga-<execução> <fase> <nanos> <enchimento>". O id da execução separa as
+    // mensagens desta execução das que o servidor reenvia do histórico ao entrar numa sala.
+    private static final String STAMP = "carga-" + Long.toHexString(System.nanoTime() ^ new Random().nextLong()) + " ";
+
+    private static String host = "localhost";
+    private static int port = 12345;
+    private static int userCount = 1000;
+    private static double loginRate = 500;
+    private static double rate = 200;
+    private static double privateFraction = 0.2;
+    private static int roomCount = 0;
+    private static int payloadSize = 64;
+
+    // Resultados por fase: [fase][0 = pública, 1 = privada]
+    private static final LatencyHistogram[][] latency = new LatencyHistogram[PHASES.length][2];
+    private static final AtomicLong[][] sent = new AtomicLong[PHASES.length][2];
+    private static final long[] phaseNanos = new long[PHASES.length];
+    private static final LatencyHistogram loginLatency = new LatencyHistogram();
+    private static final AtomicLong serverNotices = new AtomicLong(); // Avisos "não encontrado", fila cheia, etc.
+
+    public static void main(String[] args) throws Exception {
+        long warmupSeconds = 10, measureSeconds = 30, graceSeconds = 3;
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--host=")) host = value;
+            else if (arg.startsWith("--porta=")) port = Integer.parseInt(value);
+            else if (arg.startsWith("--usuarios=")) userCount = Integer.parseInt(value);
+            else if (arg.startsWith("--taxa-login=")) loginRate = Double.parseDouble(value);
+            else if (arg.startsWith("--taxa=")) rate = Double.parseDouble(value);
+            else if (arg.startsWith("--privadas=")) privateFraction = Double.parseDouble(value);
+            else if (arg.startsWith("--salas=")) roomCount = Integer.parseInt(value);
+            else if (arg.startsWith("--tamanho=")) payloadSize = Integer.parseInt(value);
+            else if (arg.startsWith("--aquecimento=")) warmupSeconds = Long.parseLong(value);
+            else if (arg.startsWith("--duracao=")) measureSeconds = Long.parseLong(value);
+            else if (arg.startsWith("--espera=")) graceSeconds = Long.parseLong(value);
+            else throw new IllegalArgumentException("Opção desconhecida: " + arg);
+        }
+        if (payloadSize > MensagemCodec.MAX_FRAME - 256) { // Espaço para o prefixo, o comando /privado e os nomes
+            throw new IllegalArgumentException("--tamanho deve ser no máximo " + (MensagemCodec.MAX_FRAME - 256) + " bytes");
+        }
+        for (int p = 0; p < PHASES.length; p++) {
+            for (int k = 0; k < 2; k++) {
+                latency[p][k] = new LatencyHistogram();
+                sent[p][k] = new AtomicLong();
+            }
+        }
+
+        ThreadFactory readers = ChatServer.handlerThreads(true);
+        User[] users = new User[userCount];
+        System.out.printf("Conectando %d usuários em %s:%d (%.0f logins/s)...%n", userCount, host, port, loginRate);
+
+        // Fase de login: conexões em horários fixos; cada leitora confirma o login ao ver o próprio aviso de entrada
+        CountDownLatch loggedIn = new CountDownLatch(userCount);
+        long start = System.nanoTime();
+        long interval = (long) (1e9 / loginRate);
+        for (int i = 0; i < userCount; i++) {
+            waitUntil(start + i * interval);
+            users[i] = new User("carga" + i, loggedIn);
+            users[i].connect(start + i * interval, readers);
+        }
+        if (!loggedIn.await(30, TimeUnit.SECONDS)) {
+            System.out.println("Aviso: " + loggedIn.getCount() + " usuários sem confirmação de login após 30 s");
+        }
+        phaseNanos[LOGIN] = System.nanoTime() - start;
+
+        if (roomCount > 0) { // Espalha os usuários pelas salas de carga e deixa os avisos de entrada passarem
+            for (User user : users) {
+                user.send("/entrar:carga-" + (user.index % roomCount));
+            }
+            Thread.sleep(1000);
+        }
+
+        runTraffic(users, WARMUP, warmupSeconds);
+        runTraffic(users, MEASURE, measureSeconds);
+        Thread.sleep(graceSeconds * 1000); // Entregas ainda a caminho
+        for (User user : users) {
+            user.close();
+        }
+        report();
+    }
+
+    // Envia mensagens em laço aberto, à taxa configurada, durante a fase
+    private static void runTraffic(User[] users, int phase, long seconds) {
+        System.out.printf("Fase %s: %.0f msgs/s por %d s%n", PHASES[phase], rate, seconds);
+        Random random = new Random(phase);
+        StringBuilder padding = new StringBuilder();
+        while (padding.length() < payloadSize) padding.append('x');
+        long interval = (long) (1e9 / rate);
+        long start = System.nanoTime();
+        long end = start + seconds * 1_000_000_000L;
+        for (long planned = start; planned < end; planned += interval) {
+            waitUntil(planned);
+            User from = users[random.nextInt(users.length)];
+            String content = STAMP + phase + " " + planned + " " + padding;
+            if (users.length > 1 && random.nextDouble() < privateFraction) {
+                User to = users[random.nextInt(users.length)];
+                if (to == from) to = users[(from.index + 1) % users.length];
+                from.send("/privado:" + to.name + ":" + content);
+                sent[phase][1].incrementAndGet();
+            } else {
+                from.send(content);
+                sent[phase][0].incrementAndGet();
+            }
+        }
+        phaseNanos[phase] = System.nanoTime() - start;
+    }
+
+    private static void waitUntil(long nanoTime) {
+        long delay;
+        while ((delay = nanoTime - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(delay);
+        }
+    }
+
+    // Chamado pelas leitoras para cada mensagem gerada recebida
+    private static void delivered(String content, boolean privateMessage, long receivedAt) {
+        int phaseEnd = content.indexOf(' ', STAMP.length());
+        int stampEnd = content.indexOf(' ', phaseEnd + 1);
+        if (phaseEnd < 0 || stampEnd < 0) return;
+        int phase = Integer.parseInt(content, STAMP.length(), phaseEnd, 10);
+        long planned = Long.parseLong(content, phaseEnd + 1, stampEnd, 10);
+        latency[phase][privateMessage ? 1 : 0].record(receivedAt - planned);
+    }
+
+    private static void report() {
+        System.out.printf("%nLogin: %d usuários em %.1f s (%.0f/s); confirmação p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, máx %.2f ms%n",
+                loginLatency.count(), phaseNanos[LOGIN] / 1e9, loginLatency.count() / (phaseNanos[LOGIN] / 1e9),
+                loginLatency.quantile(0.5) / 1e6, loginLatency.quantile(0.99) / 1e6,
+                loginLatency.quantile(0.999) / 1e6, loginLatency.max() / 1e6);
+        System.out.printf("%n%-12s %-8s %10s %10s %12s %12s %10s %10s %10s %10s%n", "fase", "tipo", "enviadas", "env/s",
+                "entregas", "entr/s", "p50 ms", "p99 ms", "p99.9 ms", "máx ms");
+        for (int phase = WARMUP; phase <= MEASURE; phase++) {
+            double seconds = phaseNanos[phase] / 1e9;
+            for (int kind = 0; kind < 2; kind++) {
+                LatencyHistogram h = latency[phase][kind];
+                long deliveries = h.count();
+                System.out.printf("%-12s %-8s %10d %10.0f %12d %12.0f %10.2f %10.2f %10.2f %10.2f%n",
+                        PHASES[phase], kind == 0 ? "publica" : "privada", sent[phase][kind].get(), sent[phase][kind].get() / seconds,
+                        deliveries, deliveries / seconds, h.quantile(0.5) / 1e6, h.quantile(0.99) / 1e6,
+                        h.quantile(0.999) / 1e6, h.max() / 1e6);
+            }
+        }
+        System.out.println("Avisos do servidor (erros, usuários não encontrados): " + serverNotices.get());
+    }
+
+    // Um usuário simulado: socket, escrita protegida por lock e uma thread leitora
+    private static final class User {
+        private static int created;
+        final int index;
+        final String name;
+        private final CountDownLatch loggedIn;
+        private final ReentrantLock writeLock = new ReentrantLock();
+        private Socket socket;
+        private DataOutputStream out;
+        private long loginStart;
+        private volatile boolean confirmed;
+
+        User(String name, CountDownLatch loggedIn) {
+            this.index = created++;
+            this.name = name;
+            this.loggedIn = loggedIn;
+        }
+
+        void connect(long plannedStart, ThreadFactory readers) throws IOException {
+            loginStart = plannedStart;
+            socket = new Socket(host, port);
+            socket.setTcpNoDelay(true);
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            readers.newThread(() -> read(in)).start();
+            send(""); // Login: a primeira mensagem só traz o nome do usuário (remetente)
+        }
+
+        void send(String content) {
+            writeLock.lock();
+            try {
+                MensagemCodec.write(out, new Mensagem(name, null, content));
+            } catch (IOException e) {
+                // Conexão fechada pelo servidor: a falta de entregas aparece no relatório
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        private void read(DataInputStream in) {
+            String joinNotice = name + " entrou na sala #";
+            try {
+                while (true) {
+                    Mensagem msg = MensagemCodec.read(in);
+                    long now = System.nanoTime();
+                    String content = msg.getConteudo();
+                    if (content.startsWith(STAMP)) {
+                        delivered(content, name.equals(msg.getDestinatario()), now);
+                    } else if (msg.getRemetente().equals("Servidor")) {
+                        if (!confirmed && content.startsWith(joinNotice)) {
+                            confirmed = true;
+                            loginLatency.record(now - loginStart);
+                            loggedIn.countDown();
+                        } else if (name.equals(msg.getDestinatario())) {
+                            serverNotices.incrementAndGet();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                // Conexão encerrada
+            }
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) { /* ignora */ }
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package chatTcp;
+
+import java.io.*; // Escrita do arquivo de log
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Log assíncrono do ChatServer: as threads do chat só publicam eventos; uma thread de fundo formata e escreve.
+//
+// - Eventos de tamanho fixo (nível, horário, thread, modelo e até 3 argumentos) ficam num anel pré-alocado.
+//   O modelo usa "{}" no lugar de cada argumento: quem publica não concatena strings nem trava nada, e um
+//   evento abaixo do nível configurado custa só uma comparação.
+// - Vários produtores: cada um reserva uma posição com CAS no contador 'head' e marca o evento como publicado
+//   gravando o número da sequência nele (escrita volátil). O único consumidor ('tail') lê em ordem.
+// - Anel cheio: o evento é descartado e contado (dropped), nunca bloqueia quem publica. O escritor registra
+//   no próprio log quantos eventos foram descartados.
+// - O escritor formata em lote e só descarrega o arquivo quando o anel esvazia.
+//
+// Configuração (ChatServer): --log=arquivo|console (padrão chat-servidor.log)  --log-nivel=debug|info|aviso|erro
+final class ChatLog {
+    enum Level { DEBUG, INFO, WARN, ERROR }
+
+    private static final int CAPACITY = 16 * 1024; // Eventos no anel (potência de 2)
+    private static final int MASK = CAPACITY - 1;
+    private static final long IDLE_PARK_NANOS = 10_000_000; // Espera máxima do escritor com o anel vazio
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    private static final Event[] ring = new Event[CAPACITY];
+    private static final AtomicLong head = new AtomicLong(); // Próxima sequência a reservar (produtores)
+    private static volatile long tail; // Próxima sequência a escrever (só o escritor altera)
+    private static final AtomicLong dropped = new AtomicLong();
+    private static volatile Level minLevel = Level.INFO;
+    private static volatile Thread writer;
+    private static volatile boolean writerIdle; // Escritor parado esperando eventos: quem publica o acorda
+    private static volatile boolean closing;
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            ring[i] = new Event();
+        }
+    }
+
+    private ChatLog() {}
+
+    // Um evento do anel. Os campos são escritos pelo produtor antes de 'published' e lidos pelo escritor depois.
+    private static final class Event {
+        volatile long published = -1; // Sequência do evento publicado nesta posição
+        long time;
+        Level level;
+        String thread;
+        String template;
+        Object a, b, c;
+    }
+
+    // Converte o valor da opção --log-nivel= no nível correspondente
+    static Level parseLevel(String name) {
+        switch (name) {
+            case "debug": return Level.DEBUG;
+            case "info": return Level.INFO;
+            case "aviso": return Level.WARN;
+            case "erro": return Level.ERROR;
+            default: throw new IllegalArgumentException("Nível de log desconhecido: " + name + " (use debug, info, aviso ou erro)");
+        }
+    }
+
+    // Inicia o escritor. destination = caminho do arquivo (acrescenta ao fim) ou "console".
+    static void start(String destination, Level level) throws IOException {
+        minLevel = level;
+        Writer out;
+        if (destination.equals("console")) {
+            out = new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8);
+        } else {
+            out = new OutputStreamWriter(Files.newOutputStream(Path.of(destination),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND), StandardCharsets.UTF_8);
+        }
+        Writer buffered = new BufferedWriter(out, 64 * 1024);
+        Thread thread = new Thread(() -> writeLoop(buffered), "chat-log");
+        thread.setDaemon(true);
+        writer = thread;
+        thread.start();
+        // Ao encerrar o processo, o escritor esvazia o anel antes de terminar
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            closing = true;
+            LockSupport.unpark(thread);
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) { /* encerra assim mesmo */ }
+        }));
+    }
+
+    static boolean enabled(Level level) {
+        return level.compareTo(minLevel) >= 0;
+    }
+
+    static long dropped() {
+        return dropped.get();
+    }
+
+    static void debug(String template, Object a) { publish(Level.DEBUG, template, a, null, null); }
+    static void debug(String template, Object a, Object b) { publish(Level.DEBUG, template, a, b, null); }
+    static void debug(String template, Object a, Object b, Object c) { publish(Level.DEBUG, template, a, b, c); }
+    static void info(String template, Object a) { publish(Level.INFO, template, a, null, null); }
+    static void info(String template, Object a, Object b) { publish(Level.INFO, template, a, b, null); }
+    static void warn(String template, Object a) { publish(Level.WARN, template, a, null, null); }
+    static void warn(String template, Object a, Object b) { publish(Level.WARN, template, a, b, null); }
+    static void error(String template, Object a, Object b) { publish(Level.ERROR, template, a, b, null); }
+
+    private static void publish(Level level, String template, Object a, Object b, Object c) {
+        if (level.compareTo(minLevel) < 0) return;
+        long seq;
+        do {
+            seq = head.get();
+            if (seq - tail >= CAPACITY) { // Anel cheio: descarta em vez de esperar o escritor
+                dropped.incrementAndGet();
+                return;
+            }
+        } while (!head.compareAndSet(seq, seq + 1));
+
+        Event event = ring[(int) seq & MASK];
+        event.time = System.currentTimeMillis();
+        event.level = level;
+        event.thread = Thread.currentThread().getName();
+        event.template = template;
+        event.a = a;
+        event.b = b;
+        event.c = c;
+        event.published = seq; // Publica: o escritor só lê os campos depois de ver a sequência
+        if (writerIdle) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    // Laço do escritor: formata os eventos em ordem e descarrega o arquivo quando o anel esvazia
+    private static void writeLoop(Writer out) {
+        StringBuilder line = new StringBuilder(256);
+        long reportedDrops = 0;
+        boolean pending = false; // Há texto no buffer ainda não descarregado
+        while (true) {
+            long seq = tail;
+            Event event = ring[(int) seq & MASK];
+            if (event.published != seq) { // Anel vazio (ou o próximo evento ainda está sendo preenchido)
+                try {
+                    long drops = dropped.get();
+                    if (drops != reportedDrops) {
+                        out.write(TIME.format(Instant.now()) + " AVISO [chat-log] " + (drops - reportedDrops)
+                                + " eventos de log descartados (anel cheio)" + System.lineSeparator());
+                        reportedDrops = drops;
+                        pending = true;
+                    }
+                    if (pending) {
+                        out.flush();
+                        pending = false;
+                    }
+                } catch (IOException e) {
+                    System.err.println("Erro ao escrever o log: " + e.getMessage());
+                }
+                if (closing) return;
+                writerIdle = true;
+                if (ring[(int) seq & MASK].published != seq) { // Confere de novo depois de anunciar a espera
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+                writerIdle = false;
+                continue;
+            }
+
+            line.setLength(0);
+            format(line, event);
+            Throwable error = event.level == Level.ERROR ? throwable(event) : null;
+            event.a = event.b = event.c = null; // Não segura os argumentos até a próxima volta do anel
+            event.template = null;
+            tail = seq + 1; // Libera a posição para os produtores
+            try {
+                out.append(line).append(System.lineSeparator());
+                if (error != null) {
+                    PrintWriter trace = new PrintWriter(out);
+                    error.printStackTrace(trace);
+                    trace.flush();
+                }
+                pending = true;
+            } catch (IOException e) {
+                System.err.println("Erro ao escrever o log: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void format(StringBuilder line, Event event) {
+        line.append(TIME.format(Instant.ofEpochMilli(event.time))).append(' ').append(label(event.level))
+                .append(" [").append(event.thread).append("] ");
+        String template = event.template;
+        Object[] args = {event.a, event.b, event.c};
+        int arg = 0;
+        int from = 0;
+        int at;
+        while (arg < args.length && (at = template.indexOf("{}", from)) >= 0) {
+            line.append(template, from, at).append(args[arg++]);
+            from = at + 2;
+        }
+        line.append(template, from, template.length());
+    }
+
+    private static Throwable throwable(Event event) {
+        if (event.a instanceof Throwable) return (Throwable) event.a;
+        if (event.b instanceof Throwable) return (Throwable) event.b;
+        return event.c instanceof Throwable ? (Throwable) event.c : null;
+    }
+
+    private static String label(Level level) {
+        switch (level) {
+            case DEBUG: return "DEBUG";
+            case INFO: return "INFO ";
+            case WARN: return "AVISO";
+            default: return "ERRO ";
+        }
+    }
+}
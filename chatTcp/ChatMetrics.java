@@ -0,0 +1,193 @@
+package chatTcp;
+
+import java.io.*; // Streams do endpoint de métricas
+import java.net.*; // ServerSocket local do endpoint
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder; // Contador com células por thread: sem disputa no caminho quente
+
+// Instrumentação do caminho leitura -> processMessage -> fan-out do ChatServer (nos dois motores).
+//
+// - Contadores de mensagens e bytes recebidos/enviados (LongAdder) e, a cada segundo, as taxas por segundo.
+// - Histogramas (LatencyHistogram): tempo de decodificação de cada quadro recebido e tempo de processMessage,
+//   que para uma mensagem de sala inclui o fan-out até o último destinatário ter o quadro na fila.
+// - Usuários conectados e profundidade da fila de saída de cada destinatário (OutboundQueue).
+//
+// Leitura: comando /stats (resumo) e, com --metricas=porta, um endpoint HTTP em texto puro só em 127.0.0.1
+// (curl http://127.0.0.1:porta/) no formato "nome{rótulo} valor", uma métrica por linha.
+//
+// Como ler: fan-out alto com decodificação baixa e filas vazias = CPU/locks no processamento;
+// filas cheias e descartes crescendo = clientes (sockets) não acompanham.
+final class ChatMetrics {
+    static final LongAdder messagesIn = new LongAdder();
+    static final LongAdder messagesOut = new LongAdder(); // Quadros escritos nos sockets dos clientes
+    static final LongAdder bytesIn = new LongAdder();
+    static final LongAdder bytesOut = new LongAdder();
+    static final LongAdder socketWrites = new LongAdder(); // Escritas nos sockets dos clientes (flush ou escrita agrupada)
+    static final LatencyHistogram decode = new LatencyHistogram();
+    static final LatencyHistogram fanOut = new LatencyHistogram();
+
+    // Taxas do último segundo, calculadas pela thread de amostragem
+    private static volatile double messagesInRate, messagesOutRate, bytesInRate, bytesOutRate;
+
+    private ChatMetrics() {}
+
+    // Um quadro recebido de um cliente; 'decodeStart' é o System.nanoTime() de antes da decodificação
+    static void received(int frameBytes, long decodeStart) {
+        decode.record(System.nanoTime() - decodeStart);
+        messagesIn.increment();
+        bytesIn.add(frameBytes);
+    }
+
+    // Um quadro escrito no socket de um cliente
+    static void sent(int frameBytes) {
+        messagesOut.increment();
+        bytesOut.add(frameBytes);
+    }
+
+    // Uma escrita no socket de um cliente, levando um lote de quadros
+    static void wrote() {
+        socketWrites.increment();
+    }
+
+    // Inicia a amostragem das taxas e, se port > 0, o endpoint de texto em 127.0.0.1:port
+    static void start(int port) {
+        Thread sampler = new Thread(ChatMetrics::sampleLoop, "chat-metricas");
+        sampler.setDaemon(true);
+        sampler.start();
+        if (port > 0) {
+            try {
+                ServerSocket server = new ServerSocket(port, 16, InetAddress.getLoopbackAddress());
+                Thread endpoint = new Thread(() -> serve(server), "chat-metricas-http");
+                endpoint.setDaemon(true);
+                endpoint.start();
+                System.out.println("Métricas em http://127.0.0.1:" + port + "/");
+            } catch (IOException e) {
+                System.err.println("Não foi possível abrir o endpoint de métricas na porta " + port + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static void sampleLoop() {
+        long lastIn = 0, lastOut = 0, lastBytesIn = 0, lastBytesOut = 0;
+        long last = System.nanoTime();
+        while (true) {
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long now = System.nanoTime();
+            double seconds = (now - last) / 1e9;
+            long in = messagesIn.sum(), out = messagesOut.sum(), bIn = bytesIn.sum(), bOut = bytesOut.sum();
+            messagesInRate = (in - lastIn) / seconds;
+            messagesOutRate = (out - lastOut) / seconds;
+            bytesInRate = (bIn - lastBytesIn) / seconds;
+            bytesOutRate = (bOut - lastBytesOut) / seconds;
+            lastIn = in;
+            lastOut = out;
+            lastBytesIn = bIn;
+            lastBytesOut = bOut;
+            last = now;
+        }
+    }
+
+    // Texto do comando /stats
+    static String summary() {
+        Collection<ChatServer.Connection> connections = ChatServer.connections();
+        long queued = 0, dropped = 0;
+        List<Map.Entry<String, Integer>> deepest = new ArrayList<>(); // Profundidades lidas uma vez (mudam durante a ordenação)
+        for (ChatServer.Connection c : connections) {
+            int depth = c.queueDepth();
+            queued += depth;
+            dropped += c.droppedFrames();
+            if (depth > 0) deepest.add(Map.entry(c.getUsername(), depth));
+        }
+        deepest.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+
+        StringBuilder text = new StringBuilder("Estatísticas do servidor:");
+        text.append(String.format("%nMensagens/s: %.0f recebidas, %.0f enviadas (total %d / %d)",
+                messagesInRate, messagesOutRate, messagesIn.sum(), messagesOut.sum()));
+        text.append(String.format("%nBytes/s: %.0f recebidos, %.0f enviados", bytesInRate, bytesOutRate));
+        long writes = socketWrites.sum();
+        text.append(String.format("%nEscritas nos sockets: %d (%.1f mensagens por escrita)", writes,
+                writes == 0 ? 0.0 : (double) messagesOut.sum() / writes));
+        text.append("\nUsuários conectados: ").append(connections.size());
+        text.append("\nFilas de saída: ").append(queued).append(" quadros pendentes, ").append(dropped).append(" descartados");
+        for (Map.Entry<String, Integer> entry : deepest.subList(0, Math.min(5, deepest.size()))) {
+            text.append("\n  ").append(entry.getKey()).append(": ").append(entry.getValue());
+        }
+        text.append("\nEventos de log descartados: ").append(ChatLog.dropped());
+        text.append("\n").append(describe("Decodificação", decode));
+        text.append("\n").append(describe("Processamento/fan-out", fanOut));
+        return text.toString();
+    }
+
+    private static String describe(String name, LatencyHistogram h) {
+        return String.format("%s (µs, %d amostras): p50 %.1f, p99 %.1f, p99.9 %.1f, máx %.1f", name, h.count(),
+                h.quantile(0.5) / 1e3, h.quantile(0.99) / 1e3, h.quantile(0.999) / 1e3, h.max() / 1e3);
+    }
+
+    // Texto do endpoint: uma métrica por linha
+    static String scrape() {
+        StringBuilder text = new StringBuilder();
+        line(text, "chat_mensagens_recebidas_total", messagesIn.sum());
+        line(text, "chat_mensagens_enviadas_total", messagesOut.sum());
+        line(text, "chat_bytes_recebidos_total", bytesIn.sum());
+        line(text, "chat_bytes_enviados_total", bytesOut.sum());
+        line(text, "chat_escritas_socket_total", socketWrites.sum());
+        line(text, "chat_mensagens_recebidas_por_segundo", messagesInRate);
+        line(text, "chat_mensagens_enviadas_por_segundo", messagesOutRate);
+        line(text, "chat_bytes_recebidos_por_segundo", bytesInRate);
+        line(text, "chat_bytes_enviados_por_segundo", bytesOutRate);
+        Collection<ChatServer.Connection> connections = ChatServer.connections();
+        line(text, "chat_usuarios_conectados", connections.size());
+        for (ChatServer.Connection c : connections) {
+            String user = "{usuario=\"" + c.getUsername().replace("\\", "\\\\").replace("\"", "\\\"") + "\"}";
+            line(text, "chat_fila_saida_quadros" + user, c.queueDepth());
+            line(text, "chat_fila_saida_descartados_total" + user, c.droppedFrames());
+        }
+        line(text, "chat_log_descartados_total", ChatLog.dropped());
+        histogram(text, "chat_decodificacao_ns", decode);
+        histogram(text, "chat_fanout_ns", fanOut);
+        return text.toString();
+    }
+
+    private static void histogram(StringBuilder text, String name, LatencyHistogram h) {
+        for (String q : new String[] {"0.5", "0.9", "0.99", "0.999"}) {
+            line(text, name + "{quantil=\"" + q + "\"}", h.quantile(Double.parseDouble(q)));
+        }
+        line(text, name + "_max", h.max());
+        line(text, name + "_count", h.count());
+    }
+
+    private static void line(StringBuilder text, String name, long value) {
+        text.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void line(StringBuilder text, String name, double value) {
+        text.append(name).append(' ').append(String.format(Locale.ROOT, "%.1f", value)).append('\n');
+    }
+
+    // HTTP mínimo: lê o pedido (qualquer caminho) e responde com o texto das métricas
+    private static void serve(ServerSocket server) {
+        while (true) {
+            try (Socket socket = server.accept()) {
+                socket.setSoTimeout(2000);
+                BufferedReader request = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+                String header;
+                while ((header = request.readLine()) != null && !header.isEmpty()) {
+                    // Ignora a linha de pedido e os cabeçalhos
+                }
+                byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+                OutputStream out = socket.getOutputStream();
+                out.write(("HTTP/1.0 200 OK\r\nContent-Type: text/plain; charset=utf-8\r\nContent-Length: " + body.length
+                        + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                out.write(body);
+                out.flush();
+            } catch (IOException e) {
+                // Pedido com erro: segue para o próximo
+            }
+        }
+    }
+}
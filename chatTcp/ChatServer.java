@@ -2,22 +2,167 @@ package chatTcp; // Define o pacote onde a classe está localizada.
 
 import java.io.*; // Importa classes para entrada e saída de dados (Input/Output).
 import java.net.*; // Importa classes para programação de rede (ex: Sockets, ServerSocket).
+import java.nio.ByteBuffer; // Quadros codificados, compartilhados entre os destinatários
+import java.nio.channels.Channels; // Adapta o stream de saída para escrever ByteBuffers
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
 import java.util.*; // Importa classes de utilidades (ex: Map, para armazenar clientes).
 import java.util.concurrent.ConcurrentHashMap; // Importa uma implementação de Map que é segura para uso concorrente (múltiplas threads).
+import java.util.concurrent.ThreadFactory; // Cria as threads dos handlers (virtuais ou de plataforma)
 
 // Classe principal do servidor de chat.
+// Há dois motores de rede, escolhidos na inicialização:
+//   java chatTcp.ChatServer                 -> uma thread (ClientHandler) por cliente conectado
+//   java chatTcp.ChatServer --motor=nio     -> NioChatServer: poucos laços de eventos com Selector
+//   (opcional: --loops=N, quantidade de laços do motor NIO; padrão = número de núcleos)
+//   java chatTcp.ChatServer --threads=virtuais -> cada ClientHandler numa thread virtual (JDK 21+)
+// Fila de saída de cada cliente (ver OutboundQueue), nos dois motores:
+//   --fila=N (quadros, padrão 1024)  --politica=descartar|desconectar|bloquear  --bloqueio-ms=N (padrão 1000)
+//   --linger-us=N (padrão 100): com a conexão ocupada, espera até N µs por mais quadros antes de descarregar o lote
+// Histórico das salas (ver MessageLog):
+//   --historico=DIR|off (padrão chat-historico)  --replay=N (mensagens ao entrar numa sala, padrão 20)
+//   --retencao-horas=N (padrão 168)  --retencao-mb=N (padrão 1024)
+// Log (ver ChatLog): --log=arquivo|console (padrão chat-servidor.log)  --log-nivel=debug|info|aviso|erro (padrão info)
+// Métricas (ver ChatMetrics): --metricas=porta (endpoint de texto em 127.0.0.1; sem ele, só o comando /stats)
+// Cluster (ver ClusterNode): --porta=N (porta dos clientes, padrão 12345)
+//   --cluster=[host:]porta (porta entre nós; ativa o modo cluster)  --no=id  --pares=host:porta,...
+// A lógica do chat fica nos métodos estáticos abaixo e é a mesma nos dois motores:
+//   login pela primeira mensagem (o cliente entra na sala #geral)
+//   texto sem comando         -> mensagem para a sala atual
+//   /entrar:sala, /sair:sala  -> entra (e torna atual) / sai de uma sala
+//   /sala:nome:mensagem       -> mensagem para uma sala da qual o cliente é membro
+//   /privado:usuario:mensagem -> mensagem privada
+//   /usuarios, /usuarios:sala -> membros de cada sala do cliente / de uma sala
+//   /historico:sala:N, /historico:sala:2024-05-01T10:00 -> últimas N mensagens / mensagens desde o horário
+//   /nos                      -> nós do cluster e quantos usuários cada um tem
+//   /stats                    -> taxas, filas de saída e histogramas de latência do servidor
 public class ChatServer {
-    private static final int PORT = 12345; // Define a porta em que o servidor escutará por conexões. É uma constante.
-    // Mapa para armazenar os manipuladores de cliente (ClientHandler) conectados.
-    // A chave é o nome de usuário (String) e o valor é a instância de ClientHandler.
+    private static final int PORT = 12345; // Porta padrão em que o servidor escutará por conexões (--porta=N muda).
+    // Mapa para armazenar as conexões dos clientes logados.
+    // A chave é o nome de usuário (String) e o valor é a conexão (ClientHandler ou NioChatServer.NioConnection).
     // ConcurrentHashMap é usado para evitar problemas de concorrência quando múltiplas threads acessam o mapa.
-    private static final Map<String, ClientHandler> clients = new ConcurrentHashMap<>();
+    private static final Map<String, Connection> clients = new ConcurrentHashMap<>();
+    // Salas: índice sala -> membros (ver RoomIndex) e a sala atual de cada cliente (destino das mensagens sem comando).
+    static final String DEFAULT_ROOM = "geral";
+    private static final RoomIndex rooms = new RoomIndex();
+    private static final Map<Connection, String> currentRoom = new ConcurrentHashMap<>();
+    // Histórico durável das salas (null se desativado) e quantas mensagens reenviar a quem entra numa sala.
+    private static MessageLog history;
+    private static int replayCount = 20;
+    // Nó do cluster (null quando o servidor roda sozinho): diretório de usuários remotos e ligações com os outros nós.
+    private static ClusterNode cluster;
+
+    // O que a lógica do chat precisa de uma conexão, independente do motor de rede.
+    interface Connection {
+        String getUsername(); // Nome do usuário (null enquanto não fez login)
+        // Enfileira um quadro já codificado (MensagemCodec.encodeShared). O buffer é somente leitura e pode
+        // estar sendo enviado a vários clientes: cada conexão escreve a partir da sua própria view (duplicate()).
+        void send(ByteBuffer frame);
+        void close(); // Fecha a conexão; a desconexão é tratada pelo próprio motor
+        int queueDepth(); // Quadros na fila de saída (métricas)
+        long droppedFrames(); // Quadros descartados pela política da fila (métricas)
+
+        default void send(Mensagem msg) { // Envia uma mensagem para um único cliente (em partes, se não couber num quadro)
+            for (Mensagem part : MensagemCodec.split(msg)) {
+                send(MensagemCodec.encodeShared(part));
+            }
+        }
+    }
 
     // Método principal da aplicação servidor. É o ponto de entrada quando o servidor é executado.
     public static void main(String[] args) {
+        String engine = "threads"; // Motor padrão: uma thread por cliente
+        int loops = Runtime.getRuntime().availableProcessors(); // Laços de eventos do motor NIO (um por núcleo)
+        boolean virtualThreads = false; // Threads de plataforma por padrão
+        String historyDir = "chat-historico"; // Diretório do histórico ("off" desativa)
+        long retentionHours = 168;
+        long retentionMegabytes = 1024;
+        int port = PORT;
+        String clusterListen = null; // [host:]porta do cluster; null = sem cluster
+        String nodeId = null;
+        List<String> peers = new ArrayList<>();
+        int metricsPort = 0; // 0 = sem endpoint de métricas
+        String logDestination = "chat-servidor.log";
+        ChatLog.Level logLevel = ChatLog.Level.INFO; // Mensagens individuais só aparecem com --log-nivel=debug
+        for (String arg : args) { // Lê as opções de linha de comando
+            if (arg.startsWith("--motor=")) {
+                engine = arg.substring("--motor=".length());
+            } else if (arg.startsWith("--loops=")) {
+                loops = Integer.parseInt(arg.substring("--loops=".length()));
+            } else if (arg.startsWith("--threads=")) {
+                virtualThreads = arg.substring("--threads=".length()).equals("virtuais");
+            } else if (arg.startsWith("--fila=")) {
+                OutboundQueue.capacity = Integer.parseInt(arg.substring("--fila=".length()));
+            } else if (arg.startsWith("--politica=")) {
+                OutboundQueue.policy = OutboundQueue.parsePolicy(arg.substring("--politica=".length()));
+            } else if (arg.startsWith("--bloqueio-ms=")) {
+                OutboundQueue.blockTimeoutMillis = Long.parseLong(arg.substring("--bloqueio-ms=".length()));
+            } else if (arg.startsWith("--linger-us=")) {
+                OutboundQueue.lingerNanos = Long.parseLong(arg.substring("--linger-us=".length())) * 1000;
+            } else if (arg.startsWith("--historico=")) {
+                historyDir = arg.substring("--historico=".length());
+            } else if (arg.startsWith("--replay=")) {
+                replayCount = Integer.parseInt(arg.substring("--replay=".length()));
+            } else if (arg.startsWith("--retencao-horas=")) {
+                retentionHours = Long.parseLong(arg.substring("--retencao-horas=".length()));
+            } else if (arg.startsWith("--retencao-mb=")) {
+                retentionMegabytes = Long.parseLong(arg.substring("--retencao-mb=".length()));
+            } else if (arg.startsWith("--porta=")) {
+                port = Integer.parseInt(arg.substring("--porta=".length()));
+            } else if (arg.startsWith("--cluster=")) {
+                clusterListen = arg.substring("--cluster=".length());
+            } else if (arg.startsWith("--no=")) {
+                nodeId = arg.substring("--no=".length());
+            } else if (arg.startsWith("--pares=")) {
+                peers.addAll(Arrays.asList(arg.substring("--pares=".length()).split(",")));
+            } else if (arg.startsWith("--metricas=")) {
+                metricsPort = Integer.parseInt(arg.substring("--metricas=".length()));
+            } else if (arg.startsWith("--log=")) {
+                logDestination = arg.substring("--log=".length());
+            } else if (arg.startsWith("--log-nivel=")) {
+                logLevel = ChatLog.parseLevel(arg.substring("--log-nivel=".length()));
+            }
+        }
+        try {
+            ChatLog.start(logDestination, logLevel);
+            if (!logDestination.equals("console")) {
+                System.out.println("Log do servidor em " + logDestination);
+            }
+        } catch (IOException e) {
+            System.err.println("Não foi possível abrir o log em " + logDestination + ": " + e.getMessage());
+            return;
+        }
+        if (!historyDir.equals("off")) {
+            try {
+                history = MessageLog.open(Paths.get(historyDir), retentionHours * 3600_000, retentionMegabytes * 1024 * 1024);
+                System.out.println("Histórico em " + historyDir);
+            } catch (IOException e) {
+                System.err.println("Não foi possível abrir o histórico em " + historyDir + ": " + e.getMessage());
+            }
+        }
+        ChatMetrics.start(metricsPort);
+        if (clusterListen != null) {
+            try {
+                cluster = ClusterNode.start(nodeId, clusterListen, peers, clients.keySet());
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Não foi possível iniciar o cluster: " + e.getMessage());
+                return;
+            }
+        }
+        if (engine.equals("nio")) {
+            NioChatServer.run(port, loops); // Motor com Selector; não retorna enquanto o servidor estiver ativo
+            return;
+        }
+
+        ThreadFactory handlerThreads = handlerThreads(virtualThreads); // Fábrica das threads de cada cliente
+
         // Usa try-with-resources: o ServerSocket será fechado automaticamente ao final do bloco try ou se ocorrer uma exceção.
-        try (ServerSocket serverSocket = new ServerSocket(PORT)) {
-            System.out.println("Servidor iniciado na porta " + PORT); // Exibe uma mensagem no console indicando que o servidor iniciou.
+        // O laço de accept roda na thread principal (de plataforma) e não segura nenhum lock enquanto bloqueia.
+        try (ServerSocket serverSocket = new ServerSocket(port)) {
+            System.out.println("Servidor iniciado na porta " + port); // Exibe uma mensagem no console indicando que o servidor iniciou.
 
             // Loop infinito para continuar aceitando novas conexões de clientes.
             while (true) {
@@ -25,9 +170,9 @@ public class ChatServer {
                 // Quando um cliente se conecta, um objeto Socket é retornado, representando a conexão com esse cliente.
                 Socket clientSocket = serverSocket.accept();
                 // Para cada cliente que se conecta, uma nova instância de ClientHandler é criada.
-                // ClientHandler é uma Thread, então .start() inicia a execução do método run() dessa thread.
+                // ClientHandler é um Runnable executado em uma thread própria (virtual ou de plataforma).
                 // Isso permite que o servidor lide com múltiplos clientes simultaneamente.
-                new ClientHandler(clientSocket).start();
+                handlerThreads.newThread(new ClientHandler(clientSocket, handlerThreads)).start();
             }
         } catch (IOException e) {
             // Captura exceções de Entrada/Saída que podem ocorrer ao tentar criar o ServerSocket (ex: porta já em uso).
@@ -35,45 +180,433 @@ public class ChatServer {
         }
     }
 
-    // Classe interna estática que estende Thread. Cada instância desta classe manipula a comunicação com um cliente conectado.
-    static class ClientHandler extends Thread {
+    // Fábrica das threads dos handlers. Thread.ofVirtual() só existe a partir do JDK 21, então é procurada
+    // por reflexão: o código continua compilando no JDK 17 e, nele, cai para threads de plataforma.
+    // Pública porque o exerciciosTCP.TCPServer também a usa.
+    public static ThreadFactory handlerThreads(boolean virtual) {
+        if (virtual) {
+            try {
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null); // Thread.Builder.OfVirtual
+                return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+            } catch (ReflectiveOperationException e) {
+                System.err.println("Threads virtuais indisponíveis nesta JVM (requer JDK 21+); usando threads de plataforma.");
+            }
+        }
+        return Thread::new;
+    }
+
+    // Registra um cliente que acabou de fazer login (primeira mensagem recebida na conexão).
+    // Todo cliente começa na sala padrão.
+    static void registerClient(Connection client) {
+        clients.put(client.getUsername(), client); // Adiciona a conexão ao mapa de clientes ativos, usando o username como chave.
+        if (cluster != null) {
+            cluster.userJoined(client.getUsername()); // Os outros nós passam a rotear as privadas deste usuário para cá
+        }
+        joinRoom(client, DEFAULT_ROOM);
+    }
+
+    // Conexões dos clientes logados (para as métricas)
+    static Collection<Connection> connections() {
+        return clients.values();
+    }
+
+    // Processa uma mensagem recebida do cliente, medindo o tempo até o fim do fan-out (ChatMetrics.fanOut)
+    static void processMessage(Connection sender, Mensagem msg) {
+        long start = System.nanoTime();
+        dispatch(sender, msg);
+        ChatMetrics.fanOut.record(System.nanoTime() - start);
+    }
+
+    // Método para processar uma mensagem recebida do cliente e decidir o que fazer com ela.
+    private static void dispatch(Connection sender, Mensagem msg) {
+        ChatLog.debug("Msg de {}: {} (Dest: {})", sender.getUsername(), msg.getConteudo(), msg.getDestinatario()); // Log no servidor
+        String content = msg.getConteudo();
+        // Verifica se o conteúdo da mensagem começa com "/privado:", indicando uma mensagem privada.
+        if (content.startsWith("/privado:")) {
+            sendPrivateMessage(sender, msg); // Chama o método para tratar mensagens privadas.
+        } else if (content.equals("/usuarios")) { // Lista os usuários de cada sala em que o cliente está.
+            sendUserList(sender, rooms.roomsOf(sender));
+        } else if (content.startsWith("/usuarios:")) { // Lista os usuários de uma sala específica.
+            sendUserList(sender, Collections.singleton(roomName(content.substring("/usuarios:".length()))));
+        } else if (content.startsWith("/entrar:")) { // Entra em uma sala (criando-a se não existir) e a torna a sala atual.
+            joinRoom(sender, roomName(content.substring("/entrar:".length())));
+        } else if (content.startsWith("/sair:")) { // Sai de uma sala.
+            leaveRoom(sender, roomName(content.substring("/sair:".length())));
+        } else if (content.equals("/stats")) { // Métricas do servidor
+            sender.send(new Mensagem("Servidor", sender.getUsername(), ChatMetrics.summary()));
+        } else if (content.equals("/nos")) { // Estado do cluster
+            sender.send(new Mensagem("Servidor", sender.getUsername(), cluster != null ? cluster.describe() : "Este servidor não está em um cluster."));
+        } else if (content.startsWith("/historico")) { // Reenvia mensagens antigas de uma sala
+            sendHistory(sender, content);
+        } else if (content.startsWith("/sala:")) { // Mensagem para uma sala específica: /sala:nome:mensagem
+            String[] parts = content.split(":", 3);
+            if (parts.length < 3) {
+                sender.send(new Mensagem("Servidor", sender.getUsername(), "Formato inválido. Use /sala:nome:mensagem"));
+            } else {
+                sendToRoom(sender, roomName(parts[1]), parts[2].trim());
+            }
+        } else {
+            // Se não for um comando conhecido, é uma mensagem pública para a sala atual do remetente.
+            String room = currentRoom.get(sender);
+            if (room == null) {
+                sender.send(new Mensagem("Servidor", sender.getUsername(), "Você não está em nenhuma sala. Use /entrar:sala"));
+            } else {
+                sendToRoom(sender, room, content);
+            }
+        }
+    }
+
+    // Método para tratar e enviar uma mensagem privada.
+    private static void sendPrivateMessage(Connection sender, Mensagem msg) { // O conteúdo da msg aqui é esperado como "/privado:destinatario:mensagem_de_texto"
+        String username = sender.getUsername();
+        String[] parts = msg.getConteudo().split(":", 3); // Divide a string do conteúdo em até 3 partes usando ":" como delimitador.
+        // parts[0] seria "/privado", parts[1] o destinatário, parts[2] a mensagem.
+        if (parts.length >= 3) { // Verifica se o formato do comando está correto.
+            String recipientUsername = parts[1].trim(); // Extrai o nome do destinatário e remove espaços.
+            String content = parts[2].trim();   // Extrai o conteúdo da mensagem e remove espaços.
+
+            // Cria uma nova instância de Mensagem. O remetente é o usuário atual.
+            // O destinatário é 'recipientUsername' e o conteúdo é 'content' (a mensagem limpa).
+            Mensagem privateMsgToSend = new Mensagem(username, recipientUsername, content);
+            if (rejectOversized(sender, privateMsgToSend)) return;
+
+            Connection recipientClient = clients.get(recipientUsername); // Tenta obter a conexão do destinatário a partir do mapa.
+            if (recipientClient != null) { // Verifica se o destinatário está conectado.
+                recipientClient.send(privateMsgToSend); // Envia a mensagem privada para o destinatário.
+                ChatLog.debug("Msg privada de {} para {} enviada.", username, recipientUsername); // Log
+            } else if (cluster != null && cluster.sendPrivate(privateMsgToSend)) { // Destinatário conectado a outro nó
+                ChatLog.debug("Msg privada de {} para {} encaminhada ao nó {}.", username, recipientUsername, cluster.ownerOf(recipientUsername)); // Log
+            } else { // Se o destinatário não for encontrado no mapa (não está online ou não existe).
+                // Envia uma mensagem de volta para o remetente informando que o usuário não foi encontrado.
+                sender.send(new Mensagem("Servidor", username, "Usuário '" + recipientUsername + "' não encontrado ou offline."));
+                ChatLog.debug("{} tentou enviar msg para {} (offline).", username, recipientUsername); // Log
+            }
+        } else { // Se o formato do comando "/privado" estiver incorreto.
+            sender.send(new Mensagem("Servidor", username, "Formato inválido para mensagem privada. Use /privado:destinatario:mensagem"));
+        }
+    }
+
+    // Método para enviar a lista de usuários das salas pedidas de volta para o cliente que solicitou.
+    private static void sendUserList(Connection sender, Collection<String> roomNames) {
+        StringBuilder userList = new StringBuilder("Usuários por sala:");
+        for (String room : roomNames) {
+            userList.append("\n#").append(room).append(':');
+            for (Connection member : rooms.members(room)) { // Snapshot: não trava a sala
+                userList.append(' ').append(member.getUsername());
+            }
+        }
+        if (roomNames.isEmpty()) {
+            userList.append("\n(você não está em nenhuma sala)");
+        }
+        // Envia a lista como uma mensagem do "Servidor" para o usuário que fez a solicitação.
+        sender.send(new Mensagem("Servidor", sender.getUsername(), userList.toString()));
+        ChatLog.debug("Lista de usuários enviada para {}", sender.getUsername()); // Log
+    }
+
+    // Entra na sala, torna-a a sala atual do cliente e avisa os membros.
+    private static void joinRoom(Connection client, String room) {
+        if (room.isEmpty()) {
+            client.send(new Mensagem("Servidor", client.getUsername(), "Nome de sala inválido."));
+            return;
+        }
+        currentRoom.put(client, room);
+        if (rooms.join(room, client)) {
+            if (history != null) {
+                replay(client, history.lastMessages(room, replayCount)); // Últimas mensagens da sala, antes do aviso de entrada
+            }
+            broadcastSystemMessage(room, client.getUsername() + " entrou na sala #" + room + "!");
+        } else {
+            client.send(new Mensagem("Servidor", client.getUsername(), "Sala atual: #" + room));
+        }
+    }
+
+    // Sai da sala; se era a sala atual, passa a ser outra em que o cliente esteja (ou nenhuma).
+    private static void leaveRoom(Connection client, String room) {
+        if (!rooms.leave(room, client)) {
+            client.send(new Mensagem("Servidor", client.getUsername(), "Você não está na sala #" + room + "."));
+            return;
+        }
+        client.send(new Mensagem("Servidor", client.getUsername(), "Você saiu da sala #" + room + "."));
+        broadcastSystemMessage(room, client.getUsername() + " saiu da sala #" + room + ".");
+        if (room.equals(currentRoom.get(client))) {
+            Iterator<String> remaining = rooms.roomsOf(client).iterator();
+            if (remaining.hasNext()) {
+                currentRoom.put(client, remaining.next());
+            } else {
+                currentRoom.remove(client);
+            }
+        }
+    }
+
+    // Envia uma mensagem do cliente para os outros membros da sala (só quem é membro pode enviar).
+    private static void sendToRoom(Connection sender, String room, String content) {
+        if (!rooms.isMember(room, sender)) {
+            sender.send(new Mensagem("Servidor", sender.getUsername(), "Você não está na sala #" + room + ". Use /entrar:" + room));
+            return;
+        }
+        // O destinatário "#sala" indica aos clientes que é uma mensagem de sala. O horário é o do servidor
+        // (o que o cliente mandou é descartado): é por ele que o histórico indexa e aplica a retenção.
+        Mensagem msg = new Mensagem(sender.getUsername(), "#" + room, content);
+        if (rejectOversized(sender, msg)) return;
+        broadcastMessage(sender, room, msg);
+    }
+
+    // Mensagem de usuário que não cabe em um quadro (o "#sala" do destinatário pode fazê-la passar do limite):
+    // avisa o remetente em vez de repassá-la
+    private static boolean rejectOversized(Connection sender, Mensagem msg) {
+        if (MensagemCodec.fits(msg)) return false;
+        sender.send(new Mensagem("Servidor", sender.getUsername(), "Mensagem grande demais para ser entregue (máximo de "
+                + MensagemCodec.MAX_FRAME / 1024 + " KB por mensagem)."));
+        return true;
+    }
+
+    // /historico[:sala[:N ou horário]] -> reenvia ao cliente as últimas N mensagens da sala (padrão: sala atual,
+    // N = replayCount) ou as mensagens desde um horário no formato 2024-05-01T10:00
+    private static void sendHistory(Connection client, String command) {
+        if (history == null) {
+            client.send(new Mensagem("Servidor", client.getUsername(), "Histórico desativado neste servidor."));
+            return;
+        }
+        String[] parts = command.split(":", 3);
+        String room = parts.length > 1 ? roomName(parts[1]) : currentRoom.get(client);
+        if (room == null || !rooms.isMember(room, client)) {
+            client.send(new Mensagem("Servidor", client.getUsername(), "Use /historico:sala[:N ou horário] com uma sala da qual você é membro."));
+            return;
+        }
+        String arg = parts.length > 2 ? parts[2].trim() : "";
+        try {
+            if (arg.isEmpty()) {
+                replay(client, history.lastMessages(room, replayCount));
+            } else if (arg.contains("T")) {
+                long since = LocalDateTime.parse(arg).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                replay(client, history.since(room, since));
+            } else {
+                replay(client, history.lastMessages(room, Integer.parseInt(arg)));
+            }
+        } catch (NumberFormatException | DateTimeParseException e) {
+            client.send(new Mensagem("Servidor", client.getUsername(), "Argumento inválido: " + arg + " (use um número ou 2024-05-01T10:00)"));
+        }
+    }
+
+    // Envia quadros do histórico a um cliente (já estão codificados: são fatias do log)
+    private static void replay(Connection client, List<ByteBuffer> frames) {
+        for (ByteBuffer frame : frames) {
+            client.send(frame);
+        }
+    }
+
+    // Método para enviar uma mensagem para todos os outros membros de uma sala.
+    // A mensagem é codificada uma única vez; todos os destinatários recebem o mesmo buffer somente leitura.
+    private static void broadcastMessage(Connection sender, String room, Mensagem msg) {
+        ChatLog.debug("Broadcast de {} para #{}: {}", msg.getRemetente(), room, msg.getConteudo()); // Log
+        ByteBuffer frame = MensagemCodec.encodeShared(msg);
+        appendToHistory(room, msg, frame); // O mesmo quadro vai para o histórico
+        if (cluster != null) {
+            cluster.forwardToRoom(frame); // Uma vez por nó, não por usuário remoto
+        }
+        // Percorre o snapshot dos membros da sala: o custo é proporcional à sala, não ao servidor.
+        for (Connection client : rooms.members(room)) {
+            // Não envia a mensagem de volta para o cliente que a originou.
+            if (client != sender) {
+                client.send(frame); // Só enfileira: um cliente lento ou com erro não atrasa os demais.
+            }
+        }
+    }
+
+    // Método para enviar uma mensagem de sistema para TODOS os membros de uma sala.
+    static void broadcastSystemMessage(String room, String messageText) {
+        ChatLog.debug("Mensagem de Sistema (#{}): {}", room, messageText); // Log
+        // Cria uma nova Mensagem com "Servidor" como remetente, endereçada à sala,
+        // codificada uma única vez para todos.
+        ByteBuffer frame = MensagemCodec.encodeShared(new Mensagem("Servidor", "#" + room, messageText));
+        for (Connection client : rooms.members(room)) {
+            client.send(frame); // Envia a mensagem de sistema.
+        }
+        if (cluster != null) {
+            cluster.forwardToRoom(frame); // Membros da sala em outros nós também recebem o aviso
+        }
+    }
+
+    // Mensagem recebida de outro nó do cluster: entrega só aos clientes deste nó (nunca repassa a outros nós).
+    // Destinatário "#sala" = mensagem de sala; qualquer outro = mensagem privada para um usuário daqui.
+    static void deliverFromCluster(Mensagem msg) {
+        String recipient = msg.getDestinatario();
+        if (recipient.startsWith("#")) {
+            String room = recipient.substring(1);
+            // Carimbada com o relógio deste nó, como as mensagens de sala locais (sendToRoom): o histórico
+            // daqui usa um relógio só, mesmo que o do outro nó esteja adiantado ou atrasado
+            msg = new Mensagem(msg.getRemetente(), recipient, msg.getConteudo());
+            ByteBuffer frame = MensagemCodec.encodeShared(msg); // Codificada uma vez para todos os membros locais
+            if (!msg.getRemetente().equals("Servidor")) {
+                appendToHistory(room, msg, frame); // Avisos do sistema não vão para o histórico, como aqui
+            }
+            for (Connection client : rooms.members(room)) {
+                client.send(frame);
+            }
+            return;
+        }
+        Connection recipientClient = clients.get(recipient);
+        if (recipientClient != null) {
+            recipientClient.send(msg);
+        } else if (!msg.getRemetente().equals("Servidor")) { // Usuário saiu enquanto a mensagem estava a caminho: avisa o remetente
+            cluster.sendPrivate(new Mensagem("Servidor", msg.getRemetente(), "Usuário '" + recipient + "' não encontrado ou offline."));
+        }
+    }
+
+    // 'frame' é a codificação de 'msg'; o horário do histórico é o horario que o servidor deu à mensagem
+    private static void appendToHistory(String room, Mensagem msg, ByteBuffer frame) {
+        if (history == null) return;
+        try {
+            history.append(room, msg, frame);
+        } catch (IOException e) {
+            ChatLog.error("Erro ao gravar no histórico de #{}: {}", room, e.getMessage());
+        }
+    }
+
+    // Remove um cliente que se desconectou e avisa os membros das salas em que ele estava.
+    // Chamado pelo motor quando a conexão termina.
+    static void unregisterClient(Connection client) {
+        String username = client.getUsername();
+        currentRoom.remove(client);
+        Set<String> joined = rooms.leaveAll(client);
+        // Só remove se o mapa ainda aponta para esta conexão (um novo login com o mesmo nome pode tê-la substituído).
+        if (username != null && clients.remove(username, client)) {
+            if (cluster != null) {
+                cluster.userLeft(username);
+            }
+            // Envia uma mensagem de sistema para as salas do usuário informando que ele saiu.
+            for (String room : joined) {
+                broadcastSystemMessage(room, username + " saiu do chat!");
+            }
+            ChatLog.info("{} desconectado(a) e removido(a) do servidor.", username); // Log do servidor.
+        }
+    }
+
+    // Nome de sala normalizado (sem espaços e sem o '#' opcional na frente)
+    private static String roomName(String raw) {
+        String name = raw.trim();
+        return name.startsWith("#") ? name.substring(1) : name;
+    }
+
+    // Classe interna estática executada em uma thread própria. Cada instância desta classe manipula a comunicação com um cliente conectado.
+    // A leitura acontece em run(); a escrita fica com uma segunda thread (writer), a única que usa o 'out',
+    // alimentada pela fila de saída limitada do cliente.
+    static class ClientHandler implements Runnable, Connection {
+        private static final int WRITE_BUFFER_BYTES = 16 * 1024; // Lote de quadros acumulado antes de ir para o socket
         private Socket socket; // O socket para este cliente específico.
-        private ObjectOutputStream out; // Stream para enviar objetos (Mensagem) para este cliente.
-        private String username; // O nome de usuário deste cliente.
+        private DataOutputStream out; // Stream para enviar quadros (Mensagem codificada) para este cliente.
+        private final ThreadFactory threads; // Cria a thread escritora (do mesmo tipo da thread do handler)
+        private final OutboundQueue<ByteBuffer> outbound = new OutboundQueue<>(); // Quadros aguardando a thread escritora
+        private Thread writer; // Thread que esvazia 'outbound' no socket
+        private volatile String username; // O nome de usuário deste cliente.
 
         // Construtor da classe ClientHandler. Recebe o socket do cliente conectado.
-        public ClientHandler(Socket socket) {
+        public ClientHandler(Socket socket, ThreadFactory threads) {
             this.socket = socket;
+            this.threads = threads;
+        }
+
+        @Override
+        public String getUsername() {
+            return username;
+        }
+
+        // Envia um quadro para este cliente. Pode ser chamado pelas threads de outros clientes (broadcast):
+        // só enfileira uma view do quadro compartilhado, e a thread escritora faz a escrita no socket.
+        @Override
+        public void send(ByteBuffer frame) {
+            if (!outbound.offer(frame.duplicate(), true)) { // Fila cheia e a política manda desconectar
+                ChatLog.warn("{} desconectado(a): fila de saída cheia (cliente lento).", username);
+                close();
+            }
+        }
+
+        @Override
+        public int queueDepth() {
+            return outbound.size();
+        }
+
+        @Override
+        public long droppedFrames() {
+            return outbound.dropped();
+        }
+
+        // Laço da thread escritora: único ponto que escreve no 'out'.
+        // Os quadros que já estão na fila são acumulados no buffer do 'out' e vão para o socket juntos
+        // (o BufferedOutputStream também descarrega sozinho quando enche). Um quadro que chega com a conexão
+        // ociosa é descarregado na hora; num lote com mais de um quadro (conexão ocupada), o escritor ainda
+        // espera por mais quadros antes de descarregar, até OutboundQueue.lingerNanos no total por lote
+        // (o prazo é fixado na primeira espera: quadros chegando sem parar não adiam o envio).
+        private void writeLoop() {
+            WritableByteChannel sink = Channels.newChannel(out); // Escreve a view somente leitura sem precisar do array
+            try {
+                while (true) {
+                    ByteBuffer frame = outbound.take(); // Conexão ociosa: espera o próximo quadro
+                    int batch = 0;
+                    boolean lingering = false;
+                    long lingerDeadline = 0;
+                    while (frame != null) {
+                        ChatMetrics.sent(frame.remaining());
+                        while (frame.hasRemaining()) {
+                            sink.write(frame);
+                        }
+                        batch++;
+                        frame = outbound.poll(); // Já na fila: entra no mesmo lote
+                        if (frame == null && batch > 1 && OutboundQueue.lingerNanos > 0) {
+                            if (!lingering) {
+                                lingering = true;
+                                lingerDeadline = System.nanoTime() + OutboundQueue.lingerNanos;
+                            }
+                            long left = lingerDeadline - System.nanoTime();
+                            if (left > 0) {
+                                frame = outbound.poll(left);
+                            }
+                        }
+                    }
+                    out.flush();
+                    ChatMetrics.wrote();
+                }
+            } catch (InterruptedException e) {
+                // Handler terminou: a thread escritora também termina
+            } catch (IOException e) {
+                close(); // Erro de escrita: fecha o socket, e a leitura em run() termina e faz a desconexão
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                socket.close(); // Fechar o socket faz a leitura bloqueada em run() terminar
+            } catch (IOException e) { /* ignora */ }
         }
 
         // O método run() contém a lógica que será executada pela thread do ClientHandler.
         @Override
         public void run() {
-            // Usa try-with-resources: o ObjectInputStream será fechado automaticamente.
-            try (ObjectInputStream in = new ObjectInputStream(socket.getInputStream())) { // Stream para receber objetos do cliente.
-                // Cria o ObjectOutputStream para enviar dados para o cliente.
-                out = new ObjectOutputStream(socket.getOutputStream());
+            // Usa try-with-resources: o DataInputStream será fechado automaticamente.
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) { // Stream para receber quadros do cliente.
+                // Cria o stream de saída para enviar dados para o cliente.
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), WRITE_BUFFER_BYTES));
+                writer = threads.newThread(this::writeLoop); // Inicia a thread escritora antes de qualquer envio
+                writer.start();
 
                 // A primeira mensagem enviada pelo cliente deve ser uma instância de Mensagem contendo o nome de usuário.
-                Mensagem loginMsg = (Mensagem) in.readObject(); // Lê o objeto Mensagem do cliente.
+                Mensagem loginMsg = readMessage(in); // Lê o quadro de login do cliente.
                 this.username = loginMsg.getRemetente(); // Extrai o nome de usuário do remetente da mensagem.
-                clients.put(username, this); // Adiciona este ClientHandler ao mapa de clientes ativos, usando o username como chave.
-                // Envia uma mensagem de sistema para todos os clientes informando que um novo usuário entrou.
-                broadcastSystemMessage(username + " entrou no chat!");
-                System.out.println(username + " conectou-se. IP: " + socket.getInetAddress().getHostAddress()); // Log no console do servidor
+                registerClient(this); // Adiciona ao mapa de clientes ativos e avisa os demais.
+                ChatLog.info("{} conectou-se. IP: {}", username, socket.getInetAddress().getHostAddress()); // Log do servidor
 
                 // Loop infinito para continuar lendo e processando mensagens deste cliente.
                 while (true) {
-                    Mensagem msg = (Mensagem) in.readObject(); // Lê a próxima mensagem enviada pelo cliente.
-                    processMessage(msg); // Chama o método para processar a mensagem recebida.
+                    Mensagem msg = readMessage(in); // Lê a próxima mensagem enviada pelo cliente.
+                    processMessage(this, msg); // Chama o método para processar a mensagem recebida.
                 }
             } catch (EOFException | SocketException e) { // Captura exceções que geralmente indicam desconexão do cliente.
-                System.out.println(username + " desconectou-se (EOF/SocketException)."); // Log de desconexão
-            } catch (IOException | ClassNotFoundException e) { // Captura outros erros de I/O ou se a classe Mensagem não for encontrada.
-                System.err.println("Erro no handler do cliente " + (username != null ? username : "[NÃO LOGADO]") + ": " + e.getMessage());
+                ChatLog.info("{} desconectou-se (EOF/SocketException).", username); // Log de desconexão
+            } catch (IOException e) { // Captura outros erros de I/O ou quadros inválidos.
+                ChatLog.error("Erro no handler do cliente {}: {}", username != null ? username : "[NÃO LOGADO]", e.getMessage());
             } catch (Exception e) { // Captura genérica para outras exceções inesperadas.
-                 System.err.println("Exceção inesperada no handler do cliente " + (username != null ? username : "[NÃO LOGADO]") + ": " + e.getMessage());
-                 e.printStackTrace(); // Imprime o stack trace para depuração.
+                 ChatLog.error("Exceção inesperada no handler do cliente {}: {}", username != null ? username : "[NÃO LOGADO]", e); // O log inclui o stack trace
             }
             finally {
                 // Bloco finally é sempre executado, garantindo que o cliente seja desconectado e removido.
@@ -81,125 +614,30 @@ public class ChatServer {
             }
         }
 
-        // Método para processar uma mensagem recebida do cliente e decidir o que fazer com ela.
-        private void processMessage(Mensagem msg) throws IOException {
-            System.out.println("Msg de " + username + ": " + msg.getConteudo() + " (Dest: "+msg.getDestinatario()+")"); // Log no servidor
-            // Verifica se o conteúdo da mensagem começa com "/privado:", indicando uma mensagem privada.
-            if (msg.getConteudo().startsWith("/privado:")) {
-                sendPrivateMessage(msg); // Chama o método para tratar mensagens privadas.
-            } else if (msg.getConteudo().equals("/usuarios")) { // Verifica se é o comando para listar usuários.
-                sendUserList(); // Chama o método para enviar a lista de usuários.
-            } else {
-                // Se não for um comando conhecido, é uma mensagem pública para ser transmitida a todos (broadcast).
-                // É importante recriar a mensagem ou garantir que o remetente esteja correto antes do broadcast.
-                // No código original, msg.getRemetente() já seria o username do cliente que enviou,
-                // mas o campo destinatario do objeto msg original do cliente poderia estar preenchido.
-                // Para broadcast, o destinatario deve ser null.
-                broadcastMessage(new Mensagem(this.username, null, msg.getConteudo()));
-            }
-        }
-
-        // Método para tratar e enviar uma mensagem privada.
-        private void sendPrivateMessage(Mensagem msg) { // O conteúdo da msg aqui é esperado como "/privado:destinatario:mensagem_de_texto"
-            String[] parts = msg.getConteudo().split(":", 3); // Divide a string do conteúdo em até 3 partes usando ":" como delimitador.
-            // parts[0] seria "/privado", parts[1] o destinatário, parts[2] a mensagem.
-            if (parts.length >= 3) { // Verifica se o formato do comando está correto.
-                String recipientUsername = parts[1].trim(); // Extrai o nome do destinatário e remove espaços.
-                String content = parts[2].trim();   // Extrai o conteúdo da mensagem e remove espaços.
-
-                // Cria uma nova instância de Mensagem. O remetente é o usuário atual (this.username).
-                // O destinatário é 'recipientUsername' e o conteúdo é 'content' (a mensagem limpa).
-                Mensagem privateMsgToSend = new Mensagem(this.username, recipientUsername, content);
-
-                ClientHandler recipientClient = clients.get(recipientUsername); // Tenta obter o ClientHandler do destinatário a partir do mapa.
-                if (recipientClient != null) { // Verifica se o destinatário está conectado.
-                    try {
-                        recipientClient.out.writeObject(privateMsgToSend); // Envia a mensagem privada para o ObjectOutputStream do destinatário.
-                        System.out.println("Msg privada de " + this.username + " para " + recipientUsername + " enviada."); // Log
-                    } catch (IOException e) {
-                        System.err.println("Erro ao enviar mensagem privada de " + this.username + " para " + recipientUsername + ": " + e.getMessage());
-                    }
-                } else { // Se o destinatário não for encontrado no mapa (não está online ou não existe).
-                    try {
-                        // Envia uma mensagem de volta para o remetente informando que o usuário não foi encontrado.
-                        this.out.writeObject(new Mensagem("Servidor", this.username, "Usuário '" + recipientUsername + "' não encontrado ou offline."));
-                         System.out.println(this.username + " tentou enviar msg para " + recipientUsername + " (offline)."); // Log
-                    } catch (IOException e) {
-                        System.err.println("Erro ao notificar remetente sobre usuário offline: " + e.getMessage());
-                    }
-                }
-            } else { // Se o formato do comando "/privado" estiver incorreto.
-                try {
-                    this.out.writeObject(new Mensagem("Servidor", this.username, "Formato inválido para mensagem privada. Use /privado:destinatario:mensagem"));
-                } catch (IOException e) {
-                    System.err.println("Erro ao notificar remetente sobre formato inválido de msg privada: " + e.getMessage());
-                }
-            }
-        }
-
-        // Método para enviar a lista de usuários conectados de volta para o cliente que solicitou.
-        private void sendUserList() throws IOException {
-            // Cria uma string com os nomes de todos os usuários conectados (chaves do mapa 'clients'), separados por nova linha.
-            String userListString = "Usuários conectados:\n" + String.join("\n", clients.keySet());
-            // Envia a lista como uma mensagem do "Servidor" para o usuário que fez a solicitação (this.username).
-            out.writeObject(new Mensagem("Servidor", this.username, userListString));
-            System.out.println("Lista de usuários enviada para " + this.username); // Log
-        }
-
-        // Método para enviar uma mensagem para todos os outros clientes conectados (broadcast).
-        private void broadcastMessage(Mensagem msg) { // Removido throws IOException para tratar dentro do loop
-            System.out.println("Broadcast de " + msg.getRemetente() + " para todos: " + msg.getConteudo()); // Log
-            // Itera sobre todos os ClientHandlers no mapa 'clients'.
-            for (ClientHandler client : clients.values()) {
-                // Não envia a mensagem de volta para o cliente que a originou.
-                if (!client.username.equals(this.username)) {
-                    try {
-                        client.out.writeObject(msg); // Envia a mensagem para o ObjectOutputStream do outro cliente.
-                    } catch (IOException e) {
-                        // Se ocorrer um erro ao enviar para um cliente específico (ex: ele desconectou),
-                        // exibe um erro mas continua tentando enviar para os demais.
-                        System.err.println("Erro ao fazer broadcast para " + client.username + ": " + e.getMessage());
-                        // Poderia-se adicionar lógica aqui para remover clientes que causam erro consistentemente.
-                    }
-                }
-            }
-        }
-
-        // Método para enviar uma mensagem de sistema para TODOS os clientes conectados (incluindo o originador, se aplicável).
-        private void broadcastSystemMessage(String messageText) { // Removido throws IOException para tratar dentro do loop
-            System.out.println("Mensagem de Sistema (broadcast): " + messageText); // Log
-            // Cria uma nova Mensagem com "Servidor" como remetente e sem destinatário específico (broadcast).
-            Mensagem systemMsg = new Mensagem("Servidor", null, messageText);
-            // Itera sobre todos os ClientHandlers.
-            for (ClientHandler client : clients.values()) {
-                try {
-                    client.out.writeObject(systemMsg); // Envia a mensagem de sistema.
-                } catch (IOException e) {
-                     System.err.println("Erro ao enviar mensagem de sistema para " + client.username + ": " + e.getMessage());
-                }
-            }
+        // Lê o próximo quadro (esperando a rede) e o decodifica, medindo só a decodificação
+        private Mensagem readMessage(DataInputStream in) throws IOException {
+            byte[] body = MensagemCodec.readBody(in);
+            long start = System.nanoTime();
+            Mensagem msg = MensagemCodec.decodeBody(body);
+            ChatMetrics.received(MensagemCodec.frameSize(body.length), start);
+            return msg;
         }
 
         // Método para lidar com a desconexão de um cliente.
         private void disconnectClient() {
             try {
-                if (username != null) { // Verifica se o username foi definido (ou seja, se o cliente chegou a se "logar").
-                    clients.remove(username); // Remove o cliente do mapa de clientes ativos.
-                    // Envia uma mensagem de sistema para todos informando que o usuário saiu.
-                    broadcastSystemMessage(username + " saiu do chat!");
-                    System.out.println(username + " desconectado(a) e removido(a) do servidor."); // Log no console do servidor.
+                unregisterClient(this); // Remove do mapa (se chegou a fazer login) e avisa os demais.
+                if (writer != null) {
+                    writer.interrupt(); // Encerra a thread escritora
                 }
+                outbound.clear();
                 if (socket != null && !socket.isClosed()) {
                     socket.close(); // Fecha o socket deste cliente.
                 }
             } catch (Exception e) { // Captura qualquer exceção que possa ocorrer durante a desconexão.
-                System.err.println("Erro ao desconectar cliente " + (username != null ? username : "[NÃO LOGADO]") + ": " + e.getMessage());
-            } finally {
-                // Garante que os streams sejam fechados, embora o fechamento do socket já deva cuidar disso.
-                // Isso é uma boa prática para liberar recursos.
-                try { if (out != null) out.close(); } catch (IOException e) { /* ignora */ }
-                // O 'in' é fechado pelo try-with-resources no método run().
+                ChatLog.error("Erro ao desconectar cliente {}: {}", username != null ? username : "[NÃO LOGADO]", e.getMessage());
             }
+            // O 'in' é fechado pelo try-with-resources no método run(), e o 'out' junto com o socket.
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,214 @@
+package chatTcp;
+
+import java.io.*; // Streams dos clientes de teste
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Verificação do modo cluster (ClusterNode): sobe 3 nós ChatServer nesta máquina, conecta usuários em cada um,
+// mata um dos processos (SIGKILL, como uma queda) e confere que os sobreviventes tiram os usuários dele do
+// diretório em até FAIL_MS + GOSSIP_INTERVAL_MS. Cada caso imprime "ok" ou "FALHOU"; com alguma falha o
+// programa termina com código 1.
+//
+// Uso: java chatTcp.ClusterCheck [--porta-base=12400] [--cluster-base=7400] [--motor=nio]
+// Os nós usam as portas porta-base..porta-base+2 (clientes) e cluster-base..cluster-base+2 (entre nós).
+public class ClusterCheck {
+    private static final String[] NODES = {"a", "b", "c"};
+    private static final int USERS_PER_NODE = 2;
+    private static final long CONVERGE_TIMEOUT_MS = 10_000; // Formação do cluster e propagação dos logins
+    private static int failures = 0;
+
+    public static void main(String[] args) throws Exception {
+        int basePort = 12400;
+        int clusterBase = 7400;
+        String engine = "threads";
+        for (String arg : args) {
+            if (arg.startsWith("--porta-base=")) {
+                basePort = Integer.parseInt(arg.substring("--porta-base=".length()));
+            } else if (arg.startsWith("--cluster-base=")) {
+                clusterBase = Integer.parseInt(arg.substring("--cluster-base=".length()));
+            } else if (arg.startsWith("--motor=")) {
+                engine = arg.substring("--motor=".length());
+            }
+        }
+
+        List<Process> processes = new ArrayList<>();
+        List<Client> clients = new ArrayList<>();
+        try {
+            for (int n = 0; n < NODES.length; n++) { // Cada nó conhece só o anterior: o resto vem pelo gossip
+                String seed = n == 0 ? null : "127.0.0.1:" + (clusterBase + n - 1);
+                processes.add(startNode(NODES[n], basePort + n, clusterBase + n, seed, engine));
+            }
+            for (int n = 0; n < NODES.length; n++) {
+                waitUntilListening(new InetSocketAddress("localhost", basePort + n));
+            }
+            Client[] first = new Client[NODES.length]; // Primeiro usuário de cada nó, usado para as consultas
+            for (int n = 0; n < NODES.length; n++) {
+                for (int u = 1; u <= USERS_PER_NODE; u++) {
+                    Client client = new Client(NODES[n] + u, basePort + n);
+                    clients.add(client);
+                    if (u == 1) first[n] = client;
+                }
+            }
+
+            // ### FORMAÇÃO ###
+            for (int n = 0; n < NODES.length; n++) {
+                List<String> expected = new ArrayList<>();
+                for (int other = 0; other < NODES.length; other++) {
+                    if (other != n) expected.add(memberLine(NODES[other], clusterBase + other, "vivo", USERS_PER_NODE));
+                }
+                check("nó " + NODES[n] + " vê os outros nós com " + USERS_PER_NODE + " usuários cada",
+                        waitFor(first[n], expected, CONVERGE_TIMEOUT_MS) >= 0);
+            }
+            first[0].send("/privado:c1:oi de a");
+            check("mensagem privada de um nó para outro", first[2].await("oi de a"));
+
+            // ### QUEDA DE UM NÓ ###
+            long killedAt = System.currentTimeMillis();
+            processes.get(2).destroyForcibly().waitFor();
+            long limit = ClusterNode.FAIL_MS + ClusterNode.GOSSIP_INTERVAL_MS;
+            long[] convergedAt = {-1, -1}; // Horário da primeira consulta de cada sobrevivente que viu o diretório sem c
+            long deadline = killedAt + limit + CONVERGE_TIMEOUT_MS;
+            while ((convergedAt[0] < 0 || convergedAt[1] < 0) && System.currentTimeMillis() < deadline) {
+                for (int n = 0; n < 2; n++) {
+                    if (convergedAt[n] >= 0) continue;
+                    long askedAt = System.currentTimeMillis();
+                    if (shows(first[n].ask("/nos", "Nós do cluster:"), List.of(memberLine("c", clusterBase + 2, "morto", 0),
+                            memberLine(NODES[1 - n], clusterBase + 1 - n, "vivo", USERS_PER_NODE)))) {
+                        convergedAt[n] = askedAt;
+                    }
+                }
+                Thread.sleep(20);
+            }
+            for (int n = 0; n < 2; n++) {
+                long elapsed = convergedAt[n] - killedAt;
+                System.out.println("        nó " + NODES[n] + " convergiu em até " + elapsed + " ms (limite " + limit + " ms)");
+                check("nó " + NODES[n] + " tira os usuários de c do diretório a tempo", convergedAt[n] >= 0 && elapsed <= limit);
+            }
+            first[0].send("/privado:c1:ainda aí?");
+            check("privada para usuário do nó morto avisa o remetente", first[0].await("'c1' não encontrado"));
+        } finally {
+            for (Client client : clients) client.close();
+            for (Process process : processes) process.destroy();
+            for (Process process : processes) process.waitFor();
+        }
+
+        System.out.println(failures == 0 ? "\nTodos os casos passaram." : "\n" + failures + " caso(s) falharam.");
+        if (failures > 0) System.exit(1);
+    }
+
+    private static Process startNode(String id, int port, int clusterPort, String seed, String engine) throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<String> command = new ArrayList<>(List.of(java, "-cp", System.getProperty("java.class.path"),
+                "chatTcp.ChatServer", "--porta=" + port, "--cluster=" + clusterPort, "--no=" + id,
+                "--motor=" + engine, "--historico=off", "--log=console"));
+        if (seed != null) command.add("--pares=" + seed);
+        return new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+    }
+
+    private static void waitUntilListening(InetSocketAddress node) throws InterruptedException, IOException {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            try (Socket probe = new Socket()) {
+                probe.connect(node, 200);
+                return;
+            } catch (IOException e) {
+                Thread.sleep(100);
+            }
+        }
+        throw new IOException("Nó não respondeu em " + node);
+    }
+
+    // Linha de um nó na resposta do /nos (ClusterNode.describe)
+    private static String memberLine(String id, int clusterPort, String state, int users) {
+        return id + " (127.0.0.1:" + clusterPort + ") " + state + ", " + users + " usuário(s)";
+    }
+
+    // Repete /nos até a resposta ter todas as linhas esperadas. Retorna o horário do pedido que as viu,
+    // ou -1 se o tempo acabou.
+    private static long waitFor(Client client, List<String> lines, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (System.currentTimeMillis() < deadline) {
+            long askedAt = System.currentTimeMillis();
+            if (shows(client.ask("/nos", "Nós do cluster:"), lines)) return askedAt;
+            Thread.sleep(100);
+        }
+        return -1;
+    }
+
+    private static boolean shows(String reply, List<String> lines) {
+        return reply != null && lines.stream().allMatch(reply::contains);
+    }
+
+    private static void check(String name, boolean ok) {
+        System.out.println((ok ? "ok      " : "FALHOU  ") + name);
+        if (!ok) failures++;
+    }
+
+    // Usuário de teste: login pela primeira mensagem, como os clientes, e uma thread leitora que guarda o que chega
+    private static final class Client {
+        private final String name;
+        private final Socket socket;
+        private final DataOutputStream out;
+        private final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+
+        Client(String name, int port) throws IOException {
+            this.name = name;
+            socket = new Socket("localhost", port);
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            Thread reader = new Thread(() -> {
+                try {
+                    while (true) received.add(MensagemCodec.read(in).getConteudo());
+                } catch (IOException e) {
+                    // Conexão fechada
+                }
+            }, "cliente-" + name);
+            reader.setDaemon(true);
+            reader.start();
+            send(""); // Login
+        }
+
+        void send(String content) throws IOException {
+            MensagemCodec.write(out, new Mensagem(name, null, content));
+        }
+
+        // Envia um comando e espera a resposta que começa com 'prefix' (null se não chegar em 2 s)
+        String ask(String command, String prefix) throws InterruptedException {
+            received.clear();
+            try {
+                send(command);
+            } catch (IOException e) {
+                return null;
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+            String content;
+            while ((content = received.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) != null) {
+                if (content.startsWith(prefix)) return content;
+            }
+            return null;
+        }
+
+        // Espera uma mensagem que contenha 'text' (até 2 s)
+        boolean await(String text) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+            String content;
+            while ((content = received.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) != null) {
+                if (content.contains(text)) return true;
+            }
+            return false;
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) { /* ignora */ }
+        }
+    }
+}
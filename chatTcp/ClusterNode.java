@@ -0,0 +1,523 @@
+package chatTcp;
+
+import java.io.*; // Streams e exceções de entrada e saída
+import java.net.*; // Sockets das ligações entre nós
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Modo cluster do ChatServer: vários processos (nós) ligados entre si formam um único chat.
+//   java chatTcp.ChatServer --porta=12345 --cluster=7001 --no=a
+//   java chatTcp.ChatServer --porta=12346 --cluster=7002 --no=b --pares=127.0.0.1:7001
+//
+// - Ligações: cada nó mantém uma conexão TCP persistente de saída para cada outro nó (só escreve nela)
+//   e lê as conexões que os outros abrem para ele. Os quadros são os do MensagemCodec; o destinatário diz o tipo:
+//   "#sala" = mensagem de sala, "@..." = controle do cluster, qualquer outro = mensagem privada para esse usuário.
+// - Membros: a lista de nós (id, endereço, encarnação, heartbeat) é espalhada por gossip a cada GOSSIP_INTERVAL_MS.
+//   Basta conhecer um nó (--pares) para descobrir os demais. Um nó cujo heartbeat não avança por FAIL_MS é
+//   considerado morto (só vale o heartbeat enviado pelo próprio nó: o repassado por outro pode estar atrasado):
+//   a ligação com ele é fechada e os usuários dele saem do diretório. Ao reiniciar, o nó tem encarnação nova
+//   (o horário de início) e volta a ser aceito.
+// - Diretório usuário -> nó: cada nó é o dono dos seus usuários e os anuncia diretamente a cada outro nó:
+//   a lista completa quando a ligação se estabelece e, depois, @entrou/@saiu. Cada ligação é um stream TCP
+//   ordenado, então a cópia remota fica exata enquanto a ligação existe; se ela cai, a cópia é descartada
+//   e refeita na reconexão.
+// - Roteamento: uma mensagem de sala vai uma vez para cada nó, que faz o fan-out para os seus membros da sala;
+//   uma mensagem privada vai só para o nó dono do destinatário. Quadros recebidos de outro nó nunca são
+//   repassados adiante (a malha é completa).
+final class ClusterNode {
+    static final long GOSSIP_INTERVAL_MS = 500;
+    static final long FAIL_MS = 3000; // Sem heartbeat novo por esse tempo: nó morto
+    private static final long DETECT_INTERVAL_MS = 100; // Frequência da verificação de falhas
+    private static final long RECONNECT_MS = 500;
+    private static final int CONNECT_TIMEOUT_MS = 1000;
+    private static final int LINK_QUEUE = 16 * 1024; // Quadros pendentes por ligação de saída
+    private static final int USERS_CHUNK_CHARS = 16 * 1024; // Até 3 bytes por char em UTF-8: cabe em MAX_FRAME
+
+    // Destinatários dos quadros de controle (o remetente é sempre o id do nó que envia)
+    private static final String HELLO = "@ola"; // Primeiro quadro de uma ligação: "endereço encarnação"
+    private static final String NODES = "@nos"; // Gossip: uma linha "id endereço encarnação heartbeat" por nó vivo
+    private static final String USERS = "@usuarios"; // Lista completa (em pedaços) dos usuários do nó
+    private static final String JOINED = "@entrou";
+    private static final String LEFT = "@saiu";
+
+    private final String id;
+    private final String address; // host:porta anunciado aos outros nós
+    private final long incarnation = System.currentTimeMillis();
+    private volatile long heartbeat;
+    private final Set<String> localUsers; // Visão ao vivo dos usuários conectados a este nó
+    private final Map<String, Member> members = new ConcurrentHashMap<>(); // Outros nós conhecidos (vivos e mortos)
+    private final Map<String, String> directory = new ConcurrentHashMap<>(); // Usuário remoto -> id do nó dono
+    private final Map<String, Inbound> inbound = new ConcurrentHashMap<>(); // Ligação de entrada atual de cada nó
+    private final ReentrantLock membersLock = new ReentrantLock(); // Mudanças de estado dos membros
+    private final ReentrantLock announceLock = new ReentrantLock(); // Ordena anúncios de usuários e listas completas
+
+    private ClusterNode(String id, String address, Set<String> localUsers) {
+        this.id = id;
+        this.address = address;
+        this.localUsers = localUsers;
+    }
+
+    // Abre a porta do cluster, inicia o gossip e procura os pares iniciais.
+    // listen = "[host:]porta"; o host (padrão 127.0.0.1) é o endereço anunciado aos outros nós.
+    static ClusterNode start(String id, String listen, List<String> seeds, Set<String> localUsers) throws IOException {
+        String address = listen.contains(":") ? listen : "127.0.0.1:" + listen;
+        if (id == null) id = address;
+        if (id.isEmpty() || id.contains(" ") || id.contains("\n")) {
+            throw new IllegalArgumentException("Id de nó inválido: '" + id + "'");
+        }
+        ClusterNode node = new ClusterNode(id, address, localUsers);
+        ServerSocket server = new ServerSocket(socketAddress(address).getPort());
+        daemon("chat-cluster-aceita", () -> node.acceptLoop(server));
+        daemon("chat-cluster-gossip", node::gossipLoop);
+        daemon("chat-cluster-falhas", node::detectLoop);
+        for (String seed : seeds) {
+            if (!seed.isBlank() && !seed.trim().equals(address)) {
+                daemon("chat-cluster-par-" + seed.trim(), () -> node.joinVia(seed.trim()));
+            }
+        }
+        System.out.println("Cluster: nó " + id + " escutando em " + address);
+        return node;
+    }
+
+    // --- Usado pelo ChatServer ---
+
+    void userJoined(String username) {
+        announce(JOINED, username);
+    }
+
+    void userLeft(String username) {
+        announce(LEFT, username);
+    }
+
+    // Repassa um quadro de sala (já codificado) uma vez para cada nó ligado
+    void forwardToRoom(ByteBuffer frame) {
+        for (Member member : members.values()) {
+            Outbound link = member.link;
+            if (link != null) link.send(frame);
+        }
+    }
+
+    // Envia uma mensagem privada ao nó dono do destinatário. Retorna false se o destinatário não está no diretório.
+    boolean sendPrivate(Mensagem msg) {
+        String owner = directory.get(msg.getDestinatario());
+        Member member = owner == null ? null : members.get(owner);
+        Outbound link = member == null ? null : member.link;
+        return link != null && link.send(MensagemCodec.encodeShared(msg));
+    }
+
+    // Nó dono de um usuário remoto (null se desconhecido)
+    String ownerOf(String username) {
+        return directory.get(username);
+    }
+
+    // Texto do comando /nos: nós conhecidos, estado e quantidade de usuários de cada um
+    String describe() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String owner : directory.values()) {
+            counts.merge(owner, 1, Integer::sum);
+        }
+        StringBuilder text = new StringBuilder("Nós do cluster:");
+        text.append("\n* ").append(id).append(" (").append(address).append(") este nó, ")
+                .append(localUsers.size()).append(" usuário(s)");
+        List<String> ids = new ArrayList<>(members.keySet());
+        Collections.sort(ids);
+        for (String memberId : ids) {
+            Member member = members.get(memberId);
+            Outbound link = member.link;
+            text.append("\n  ").append(memberId).append(" (").append(member.address).append(") ")
+                    .append(member.dead ? "morto" : link != null && link.connected ? "vivo" : "conectando")
+                    .append(", ").append(counts.getOrDefault(memberId, 0)).append(" usuário(s)");
+        }
+        return text.toString();
+    }
+
+    // --- Diretório ---
+
+    // Anuncia um usuário deste nó a todos os nós ligados. O lock garante que, para cada ligação, o anúncio
+    // vem depois da lista completa que ela recebeu ao se conectar (ou já está refletido nela).
+    private void announce(String kind, String username) {
+        ByteBuffer frame = control(kind, username);
+        announceLock.lock();
+        try {
+            for (Member member : members.values()) {
+                Outbound link = member.link;
+                if (link != null) link.send(frame);
+            }
+        } finally {
+            announceLock.unlock();
+        }
+    }
+
+    // Lista completa dos usuários deste nó, em quadros que respeitam MAX_FRAME
+    private List<ByteBuffer> userListFrames() {
+        List<ByteBuffer> frames = new ArrayList<>();
+        StringBuilder chunk = new StringBuilder();
+        for (String username : localUsers) {
+            if (chunk.length() > 0 && chunk.length() + username.length() + 1 > USERS_CHUNK_CHARS) {
+                frames.add(control(USERS, chunk.toString()));
+                chunk.setLength(0);
+            }
+            if (chunk.length() > 0) chunk.append('\n');
+            chunk.append(username);
+        }
+        if (chunk.length() > 0) frames.add(control(USERS, chunk.toString()));
+        return frames;
+    }
+
+    private void dropUsersOf(String nodeId) {
+        directory.values().removeIf(nodeId::equals);
+    }
+
+    // --- Membros e gossip ---
+
+    // Registra o que se sabe de um nó (gossip ou @ola). direct = a informação veio do próprio nó.
+    // Só um heartbeat mais novo e direto conta como sinal de vida: um repassado por outro nó pode ter até um
+    // intervalo de gossip de atraso e adiaria a detecção de um nó que já caiu. O que vem repassado serve para
+    // descobrir nós, aceitar uma encarnação nova e trazer de volta um nó morto que seguiu batendo por mais de
+    // FAIL_MS (fim de uma partição).
+    private void observe(String nodeId, String nodeAddress, long nodeIncarnation, long nodeHeartbeat, boolean direct) {
+        if (nodeId.equals(id)) return;
+        membersLock.lock();
+        try {
+            Member member = members.get(nodeId);
+            if (member == null) {
+                member = new Member(nodeId, nodeAddress, nodeIncarnation, nodeHeartbeat);
+                members.put(nodeId, member);
+                member.link = new Outbound(member);
+                System.out.println("Cluster: nó " + nodeId + " descoberto (" + nodeAddress + ")");
+                return;
+            }
+            boolean newer = nodeIncarnation > member.incarnation
+                    || (nodeIncarnation == member.incarnation && nodeHeartbeat > member.heartbeat);
+            boolean evidence = direct || nodeIncarnation > member.incarnation
+                    || (member.dead && nodeHeartbeat > member.heartbeat + FAIL_MS / GOSSIP_INTERVAL_MS);
+            if (newer && evidence) {
+                member.incarnation = nodeIncarnation;
+                member.heartbeat = nodeHeartbeat;
+                member.address = nodeAddress;
+                member.lastSeen = System.currentTimeMillis();
+                if (member.dead) { // Nó reiniciado (encarnação nova) ou que voltou de uma partição
+                    member.dead = false;
+                    member.link = new Outbound(member);
+                    System.out.println("Cluster: nó " + nodeId + " voltou (" + nodeAddress + ")");
+                }
+            }
+        } finally {
+            membersLock.unlock();
+        }
+    }
+
+    private void gossipLoop() {
+        while (true) {
+            try {
+                Thread.sleep(GOSSIP_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            heartbeat++;
+            ByteBuffer frame = control(NODES, nodeList());
+            for (Member member : members.values()) {
+                Outbound link = member.link;
+                if (link != null) link.send(frame);
+            }
+        }
+    }
+
+    // Verifica as falhas com mais frequência que o gossip: um nó que parou de bater é declarado morto
+    // até DETECT_INTERVAL_MS depois de completar FAIL_MS, e não só na rodada de gossip seguinte
+    private void detectLoop() {
+        while (true) {
+            try {
+                Thread.sleep(DETECT_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            detectFailures();
+        }
+    }
+
+    // Linhas "id endereço encarnação heartbeat" deste nó e dos nós vivos que ele conhece
+    private String nodeList() {
+        StringBuilder text = new StringBuilder();
+        text.append(id).append(' ').append(address).append(' ').append(incarnation).append(' ').append(heartbeat);
+        membersLock.lock();
+        try {
+            for (Member member : members.values()) {
+                if (member.dead) continue;
+                text.append('\n').append(member.id).append(' ').append(member.address).append(' ')
+                        .append(member.incarnation).append(' ').append(member.heartbeat);
+            }
+        } finally {
+            membersLock.unlock();
+        }
+        return text.toString();
+    }
+
+    // A primeira linha é a do nó que enviou a lista (direta); as outras são repassadas
+    private void mergeNodeList(String text) {
+        boolean direct = true;
+        for (String line : text.split("\n")) {
+            String[] fields = line.split(" ");
+            if (fields.length != 4) continue;
+            try {
+                observe(fields[0], fields[1], Long.parseLong(fields[2]), Long.parseLong(fields[3]), direct);
+            } catch (NumberFormatException e) { /* linha inválida: ignora */ }
+            direct = false;
+        }
+    }
+
+    private void detectFailures() {
+        long now = System.currentTimeMillis();
+        membersLock.lock();
+        try {
+            for (Member member : members.values()) {
+                if (member.dead || now - member.lastSeen <= FAIL_MS) continue;
+                member.dead = true; // Fica como lápide: gossip antigo não o ressuscita, só uma encarnação nova
+                member.link.stop();
+                member.link = null;
+                Inbound in = inbound.remove(member.id);
+                if (in != null) in.close();
+                dropUsersOf(member.id);
+                System.out.println("Cluster: nó " + member.id + " considerado morto (sem heartbeat há "
+                        + (now - member.lastSeen) + " ms)");
+            }
+        } finally {
+            membersLock.unlock();
+        }
+    }
+
+    // Apresenta este nó a um par inicial (só a lista de nós, sem abrir ligação), até ele passar a ser conhecido
+    private void joinVia(String seed) {
+        while (members.values().stream().noneMatch(m -> !m.dead && m.address.equals(seed))) {
+            try (Socket socket = new Socket()) {
+                socket.connect(socketAddress(seed), CONNECT_TIMEOUT_MS);
+                MensagemCodec.write(new BufferedOutputStream(socket.getOutputStream()), new Mensagem(id, NODES, nodeList()));
+            } catch (IOException | IllegalArgumentException e) {
+                // Par ainda não está no ar: tenta de novo
+            }
+            try {
+                Thread.sleep(RECONNECT_MS * 2);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // --- Ligações ---
+
+    private void acceptLoop(ServerSocket server) {
+        while (true) {
+            try {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                Inbound in = new Inbound(socket);
+                daemon("chat-cluster-entrada", in::run);
+            } catch (IOException e) {
+                System.err.println("Cluster: erro ao aceitar ligação: " + e.getMessage());
+            }
+        }
+    }
+
+    // Ligação de entrada: lê os quadros que outro nó envia para este
+    private final class Inbound {
+        private final Socket socket;
+        private String nodeId; // Definido pelo @ola
+
+        Inbound(Socket socket) {
+            this.socket = socket;
+        }
+
+        void run() {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+                Mensagem first = MensagemCodec.read(in);
+                if (NODES.equals(first.getDestinatario())) { // Apresentação de um nó novo (joinVia)
+                    mergeNodeList(first.getConteudo());
+                    return;
+                }
+                if (!HELLO.equals(first.getDestinatario())) {
+                    throw new StreamCorruptedException("Ligação de cluster sem " + HELLO);
+                }
+                String[] hello = first.getConteudo().split(" ");
+                observe(first.getRemetente(), hello[0], Long.parseLong(hello[1]), 0, true);
+                nodeId = first.getRemetente();
+                Inbound previous = inbound.put(nodeId, this);
+                if (previous != null) previous.close();
+                dropUsersOf(nodeId); // A lista completa do nó vem logo a seguir nesta ligação
+
+                while (true) {
+                    handle(MensagemCodec.read(in));
+                }
+            } catch (EOFException | SocketException e) {
+                // Ligação fechada
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Cluster: erro na ligação vinda de " + (nodeId != null ? nodeId : socket.getRemoteSocketAddress())
+                        + ": " + e.getMessage());
+            } finally {
+                close();
+                if (nodeId != null && inbound.remove(nodeId, this)) {
+                    dropUsersOf(nodeId); // Sem a ligação não há como manter a cópia atualizada
+                }
+            }
+        }
+
+        private void handle(Mensagem msg) {
+            String kind = msg.getDestinatario();
+            if (kind == null) return;
+            boolean current = inbound.get(nodeId) == this; // Uma ligação substituída não mexe mais no diretório
+            switch (kind) {
+                case NODES:
+                    mergeNodeList(msg.getConteudo());
+                    break;
+                case USERS:
+                    if (current) {
+                        for (String username : msg.getConteudo().split("\n")) {
+                            directory.put(username, nodeId);
+                        }
+                    }
+                    break;
+                case JOINED:
+                    if (current) directory.put(msg.getConteudo(), nodeId);
+                    break;
+                case LEFT:
+                    if (current) directory.remove(msg.getConteudo(), nodeId);
+                    break;
+                default:
+                    if (!kind.startsWith("@")) { // Controle desconhecido é ignorado
+                        ChatServer.deliverFromCluster(msg);
+                    }
+            }
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) { /* ignora */ }
+        }
+    }
+
+    // Ligação de saída para um nó: uma thread que conecta (e reconecta) e escreve os quadros da fila
+    private final class Outbound {
+        private final Member member;
+        // Nó que não acompanha derruba a ligação; na reconexão ele recebe de novo a lista completa
+        private final OutboundQueue<ByteBuffer> queue = new OutboundQueue<>(LINK_QUEUE, OutboundQueue.Policy.DISCONNECT);
+        private final Thread thread;
+        private volatile Socket socket;
+        private volatile boolean connected; // send() só enfileira com a ligação estabelecida
+        private volatile boolean stopped;
+
+        Outbound(Member member) {
+            this.member = member;
+            this.thread = daemon("chat-cluster-saida-" + member.id, this::run);
+        }
+
+        boolean send(ByteBuffer frame) {
+            if (!connected) return false;
+            if (!queue.offer(frame.duplicate(), false)) {
+                System.err.println("Cluster: fila da ligação com " + member.id + " cheia; reconectando.");
+                closeSocket();
+                return false;
+            }
+            return true;
+        }
+
+        void stop() {
+            stopped = true;
+            connected = false;
+            closeSocket();
+            thread.interrupt();
+        }
+
+        private void run() {
+            while (!stopped) {
+                try (Socket s = new Socket()) {
+                    socket = s;
+                    s.connect(socketAddress(member.address), CONNECT_TIMEOUT_MS);
+                    s.setTcpNoDelay(true);
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+                    MensagemCodec.write(out, new Mensagem(id, HELLO, address + " " + incarnation));
+                    announceLock.lock();
+                    try { // Lista completa antes de qualquer anúncio feito depois da conexão
+                        queue.clear();
+                        for (ByteBuffer frame : userListFrames()) {
+                            queue.offer(frame, false);
+                        }
+                        connected = true;
+                    } finally {
+                        announceLock.unlock();
+                    }
+                    System.out.println("Cluster: ligado ao nó " + member.id + " (" + member.address + ")");
+
+                    WritableByteChannel sink = Channels.newChannel(out);
+                    while (!stopped) {
+                        ByteBuffer frame = queue.take();
+                        while (frame.hasRemaining()) {
+                            sink.write(frame);
+                        }
+                        if (queue.isEmpty()) out.flush(); // Agrupa os quadros que já estavam na fila
+                    }
+                } catch (IOException | IllegalArgumentException e) {
+                    if (connected) {
+                        System.out.println("Cluster: ligação com o nó " + member.id + " caiu: " + e.getMessage());
+                    }
+                } catch (InterruptedException e) {
+                    return; // stop()
+                } finally {
+                    connected = false;
+                }
+                try {
+                    Thread.sleep(RECONNECT_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        private void closeSocket() {
+            Socket s = socket;
+            if (s != null) {
+                try {
+                    s.close();
+                } catch (IOException e) { /* ignora */ }
+            }
+        }
+    }
+
+    // Estado conhecido de outro nó (alterado com membersLock)
+    private static final class Member {
+        final String id;
+        volatile String address;
+        long incarnation;
+        long heartbeat;
+        volatile long lastSeen = System.currentTimeMillis();
+        volatile boolean dead;
+        volatile Outbound link; // null enquanto o nó está morto
+
+        Member(String id, String address, long incarnation, long heartbeat) {
+            this.id = id;
+            this.address = address;
+            this.incarnation = incarnation;
+            this.heartbeat = heartbeat;
+        }
+    }
+
+    private ByteBuffer control(String kind, String content) {
+        return MensagemCodec.encodeShared(new Mensagem(id, kind, content));
+    }
+
+    private static InetSocketAddress socketAddress(String hostPort) {
+        int colon = hostPort.lastIndexOf(':');
+        if (colon < 0) throw new IllegalArgumentException("Endereço sem porta: " + hostPort);
+        return new InetSocketAddress(hostPort.substring(0, colon), Integer.parseInt(hostPort.substring(colon + 1)));
+    }
+
+    private static Thread daemon(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+}
@@ -0,0 +1,76 @@
+package chatTcp;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Histograma de latências com faixas log-lineares (no estilo do HdrHistogram), em nanossegundos.
+//
+// - Valores abaixo de 16 ns têm uma faixa cada; a partir daí cada potência de 2 é dividida em 16 faixas
+//   iguais, então o erro relativo de qualquer valor é no máximo 1/16 (~6%), de 16 ns até ~292 anos.
+// - record() só calcula o índice com operações de bits e incrementa um contador atômico:
+//   não aloca nada e não trava, podendo ser chamado por várias threads no caminho quente.
+// - Os quantis são calculados na leitura (percorrendo as 960 faixas) e devolvem o limite superior da faixa.
+final class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS; // Faixas por potência de 2
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    void record(long nanos) {
+        counts.incrementAndGet(index(Math.max(0, nanos)));
+    }
+
+    long count() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    // Valor (ns) abaixo do qual está a fração 'quantile' das amostras; 0 se não há amostras
+    long quantile(double quantile) {
+        long[] snapshot = snapshot();
+        long total = 0;
+        for (long c : snapshot) total += c;
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) return upperBound(i);
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    // Maior valor registrado (limite superior da última faixa ocupada)
+    long max() {
+        for (int i = BUCKETS - 1; i >= 0; i--) {
+            if (counts.get(i) != 0) return upperBound(i);
+        }
+        return 0;
+    }
+
+    private long[] snapshot() {
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+        }
+        return snapshot;
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value); // >= SUB_BITS
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+        int sub = index % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BITS);
+        return ((long) (SUB_BUCKETS + sub) << (exponent - SUB_BITS)) + width - 1;
+    }
+}
@@ -15,6 +15,14 @@ public class Mensagem implements Serializable {
         this.horario = LocalDateTime.now();
     }
 
+    // Usado pelo MensagemCodec ao decodificar: mantém o horário que veio no quadro
+    Mensagem(String remetente, String destinatario, String conteudo, LocalDateTime horario) {
+        this.remetente = remetente;
+        this.destinatario = destinatario;
+        this.conteudo = conteudo;
+        this.horario = horario;
+    }
+
     public String getRemetente() { return remetente; }
     public String getDestinatario() { return destinatario; }
     public String getConteudo() { return conteudo; }
@@ -0,0 +1,286 @@
+package chatTcp;
+
+import java.io.*; // Importa classes de entrada e saída (streams e exceções)
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer; // Buffer de bytes usado pelo servidor NIO
+import java.nio.charset.StandardCharsets; // Strings vão no fio em UTF-8
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+// Codificação binária das mensagens trocadas entre clientes e servidor (substitui a serialização Java).
+//
+// Quadro:  [tamanho do corpo (varint)][corpo]
+// Corpo:   [versão (1 byte)][flags (1 byte)][remetente][destinatario, se a flag 1 estiver ligada][conteudo][horario]
+//          strings = [tamanho em bytes (varint)][UTF-8]; horario = epoch-millis (long de 8 bytes, big-endian)
+//
+// Com o tamanho na frente, quem lê sabe se um quadro já chegou inteiro sem precisar bloquear,
+// o que permite ao NioChatServer decodificar as mensagens direto do buffer de leitura.
+// Nenhum quadro com corpo maior que MAX_FRAME é gerado: encode() recusa a mensagem (quem decodifica derrubaria a
+// conexão). Os clientes conferem com fits() antes de enviar; o servidor divide as próprias respostas com split().
+// Varint: 7 bits por byte, do menos significativo para o mais; o bit 8 indica que há mais bytes.
+final class MensagemCodec {
+    static final int MAX_FRAME = 64 * 1024; // Quadros maiores que isso são tratados como erro de protocolo
+    static final byte VERSION = 1; // Versão do formato do corpo
+    private static final int HAS_RECIPIENT = 1; // Flag: a mensagem tem destinatário (senão é broadcast)
+    private static final ZoneId ZONE = ZoneId.systemDefault(); // Fuso usado para converter o LocalDateTime da Mensagem
+
+    private MensagemCodec() {} // Classe utilitária, não é instanciada
+
+    // Codifica a mensagem em um quadro completo (cabeçalho + corpo).
+    // Lança IllegalArgumentException se o corpo passar de MAX_FRAME.
+    static byte[] encode(Mensagem msg) {
+        byte[] sender = msg.getRemetente().getBytes(StandardCharsets.UTF_8);
+        byte[] recipient = msg.getDestinatario() == null ? null : msg.getDestinatario().getBytes(StandardCharsets.UTF_8);
+        byte[] content = msg.getConteudo().getBytes(StandardCharsets.UTF_8);
+
+        int bodyLength = 2 + stringSize(sender) + (recipient == null ? 0 : stringSize(recipient))
+                + stringSize(content) + Long.BYTES;
+        if (bodyLength > MAX_FRAME) {
+            throw new IllegalArgumentException("Mensagem grande demais: " + bodyLength + " bytes (máximo " + MAX_FRAME + ")");
+        }
+        byte[] frame = new byte[varintSize(bodyLength) + bodyLength];
+        ByteBuffer out = ByteBuffer.wrap(frame);
+        putVarint(out, bodyLength);
+        out.put(VERSION);
+        out.put((byte) (recipient == null ? 0 : HAS_RECIPIENT));
+        putString(out, sender);
+        if (recipient != null) putString(out, recipient);
+        putString(out, content);
+        out.putLong(msg.getHorario().atZone(ZONE).toInstant().toEpochMilli());
+        return frame;
+    }
+
+    // Codifica a mensagem uma vez em um buffer somente leitura, que pode ser entregue a vários destinatários
+    // (cada um escreve a partir de um duplicate(), sem copiar nem recodificar os bytes)
+    static ByteBuffer encodeShared(Mensagem msg) {
+        return ByteBuffer.wrap(encode(msg)).asReadOnlyBuffer();
+    }
+
+    // A mensagem cabe em um quadro (encode() aceita)?
+    static boolean fits(Mensagem msg) {
+        return bodySize(msg.getRemetente(), msg.getDestinatario(), utf8Length(msg.getConteudo())) <= MAX_FRAME;
+    }
+
+    // Divide uma mensagem que não cabe em um quadro em várias que cabem (mesmo remetente, destinatário e horário).
+    // Corta de preferência em uma quebra de linha ou espaço, e nunca no meio de um par de surrogates.
+    static List<Mensagem> split(Mensagem msg) {
+        if (fits(msg)) return List.of(msg);
+        int overhead = bodySize(msg.getRemetente(), msg.getDestinatario(), MAX_FRAME) - MAX_FRAME; // Varint do conteúdo no maior tamanho
+        int room = MAX_FRAME - overhead; // Bytes de conteúdo por parte
+        if (room < 4) {
+            throw new IllegalArgumentException("Remetente e destinatário não deixam espaço para o conteúdo no quadro");
+        }
+        String content = msg.getConteudo();
+        List<Mensagem> parts = new ArrayList<>();
+        int from = 0;
+        while (from < content.length()) {
+            int end = from;
+            int bytes = 0;
+            while (end < content.length()) {
+                int cp = content.codePointAt(end);
+                int size = cp < 0x80 ? 1 : cp < 0x800 ? 2 : cp < 0x10000 ? 3 : 4;
+                if (bytes + size > room) break;
+                bytes += size;
+                end += Character.charCount(cp);
+            }
+            if (end < content.length()) { // Procura um separador na segunda metade da parte
+                int cut = Math.max(content.lastIndexOf('\n', end - 1), content.lastIndexOf(' ', end - 1));
+                if (cut > from + (end - from) / 2) end = cut + 1;
+            }
+            parts.add(new Mensagem(msg.getRemetente(), msg.getDestinatario(), content.substring(from, end), msg.getHorario()));
+            from = end;
+        }
+        return parts;
+    }
+
+    // Tamanho do corpo para um conteúdo de 'contentBytes' bytes em UTF-8
+    private static int bodySize(String sender, String recipient, int contentBytes) {
+        int senderBytes = utf8Length(sender);
+        int size = 2 + varintSize(senderBytes) + senderBytes + varintSize(contentBytes) + contentBytes + Long.BYTES;
+        if (recipient != null) {
+            int recipientBytes = utf8Length(recipient);
+            size += varintSize(recipientBytes) + recipientBytes;
+        }
+        return size;
+    }
+
+    // Bytes da string em UTF-8, sem codificá-la (surrogate sem par vira '?', como em getBytes)
+    private static int utf8Length(String s) {
+        int bytes = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += Character.isSurrogate(c) ? 1 : 3;
+            }
+        }
+        return bytes;
+    }
+
+    // Escreve um quadro em um stream bloqueante (clientes e motor com uma thread por conexão)
+    static void write(OutputStream out, Mensagem msg) throws IOException {
+        out.write(encode(msg)); // Uma única escrita por quadro
+        out.flush();
+    }
+
+    // Lê um quadro de um stream bloqueante. Lança EOFException quando o outro lado fecha a conexão.
+    static Mensagem read(DataInputStream in) throws IOException {
+        return decodeBody(readBody(in));
+    }
+
+    // Só a parte bloqueante de read(): espera o quadro inteiro e devolve o corpo ainda não decodificado
+    // (o ChatServer mede a decodificação separadamente da espera pela rede)
+    static byte[] readBody(DataInputStream in) throws IOException {
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            length |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) break;
+            if (shift >= 21) throw new StreamCorruptedException("Cabeçalho de quadro inválido");
+        }
+        byte[] body = new byte[checkLength(length)];
+        in.readFully(body);
+        return body;
+    }
+
+    // Decodifica um corpo lido por readBody()
+    static Mensagem decodeBody(byte[] body) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(body);
+        Mensagem msg = decodeBody(in);
+        if (in.hasRemaining()) throw new StreamCorruptedException("Bytes sobrando no quadro");
+        return msg;
+    }
+
+    // Tamanho do quadro inteiro (cabeçalho + corpo) para um corpo de 'bodyLength' bytes
+    static int frameSize(int bodyLength) {
+        return varintSize(bodyLength) + bodyLength;
+    }
+
+    // Tenta decodificar um quadro a partir da posição atual do buffer (modo leitura).
+    // Se o quadro ainda não chegou inteiro, retorna null e não consome nada;
+    // senão avança a posição até o fim do quadro e retorna a mensagem.
+    static Mensagem decode(ByteBuffer buffer) throws IOException {
+        int frameLength = frameLength(buffer);
+        if (frameLength < 0 || buffer.remaining() < frameLength) {
+            return null;
+        }
+        int end = buffer.position() + frameLength;
+        int limit = buffer.limit();
+        buffer.position(buffer.position() + headerSize(buffer)).limit(end); // Pula o cabeçalho e limita ao corpo
+        try {
+            Mensagem msg = decodeBody(buffer);
+            if (buffer.hasRemaining()) throw new StreamCorruptedException("Bytes sobrando no quadro");
+            return msg;
+        } finally {
+            buffer.limit(limit).position(end);
+        }
+    }
+
+    // Tamanho total do quadro que começa na posição atual, ou -1 se o cabeçalho ainda não chegou inteiro
+    static int frameLength(ByteBuffer buffer) throws IOException {
+        int length = 0;
+        int pos = buffer.position();
+        for (int i = 0; i < 3; i++) { // MAX_FRAME cabe em 3 bytes de varint
+            if (pos + i >= buffer.limit()) return -1;
+            int b = buffer.get(pos + i);
+            length |= (b & 0x7F) << (7 * i);
+            if ((b & 0x80) == 0) return i + 1 + checkLength(length);
+        }
+        throw new StreamCorruptedException("Cabeçalho de quadro inválido");
+    }
+
+    // Bytes do varint de tamanho no início do quadro (já validado por frameLength)
+    private static int headerSize(ByteBuffer buffer) {
+        int i = 0;
+        while ((buffer.get(buffer.position() + i) & 0x80) != 0) i++;
+        return i + 1;
+    }
+
+    private static int checkLength(int length) throws IOException {
+        if (length < 0 || length > MAX_FRAME) {
+            throw new StreamCorruptedException("Tamanho de quadro inválido: " + length);
+        }
+        return length;
+    }
+
+    // Lê o corpo a partir da posição atual do buffer
+    private static Mensagem decodeBody(ByteBuffer in) throws IOException {
+        try {
+            byte version = in.get();
+            if (version != VERSION) {
+                throw new StreamCorruptedException("Versão de quadro não suportada: " + version);
+            }
+            int flags = in.get();
+            String sender = getString(in);
+            String recipient = (flags & HAS_RECIPIENT) != 0 ? getString(in) : null;
+            String content = getString(in);
+            LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(in.getLong()), ZONE);
+            return new Mensagem(sender, recipient, content, time);
+        } catch (BufferUnderflowException e) {
+            throw new StreamCorruptedException("Quadro truncado");
+        }
+    }
+
+    private static String getString(ByteBuffer in) throws IOException {
+        int length = getVarint(in);
+        if (length > in.remaining()) throw new StreamCorruptedException("String maior que o quadro");
+        String value;
+        if (in.hasArray()) { // Decodifica direto do array, sem cópia intermediária
+            value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    private static void putString(ByteBuffer out, byte[] utf8) {
+        putVarint(out, utf8.length);
+        out.put(utf8);
+    }
+
+    private static int stringSize(byte[] utf8) {
+        return varintSize(utf8.length) + utf8.length;
+    }
+
+    private static void putVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static int getVarint(ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) break;
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Varint inválido");
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
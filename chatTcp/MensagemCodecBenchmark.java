@@ -0,0 +1,144 @@
+package chatTcp;
+
+import java.io.*; // Streams de objetos usados pelo caminho de serialização Java
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Microbenchmark: codifica e decodifica a mesma mensagem com o MensagemCodec e com a serialização Java,
+// e mostra o tempo por mensagem e os bytes por quadro de cada caminho.
+// - "serialização": o caminho antigo, um ObjectOutputStream/ObjectInputStream por conexão que dura toda a
+//   sessão, com reset() depois de cada mensagem (sem ele a tabela de objetos do stream cresce sem limite).
+//   Cabeçalho do stream e construção dos streams são pagos uma vez só; o reset() faz o descritor da classe
+//   ser reenviado a cada mensagem.
+// - "stream por mensagem": streams novos a cada mensagem (cabeçalho, descritor e construção toda vez),
+//   só como referência.
+//
+// Uso: java chatTcp.MensagemCodecBenchmark [mensagens por rodada] [rodadas]
+public class MensagemCodecBenchmark {
+    public static void main(String[] args) throws Exception {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Mensagem msg = new Mensagem("usuario123", "destinatario", "Olá! Mensagem de tamanho típico de um chat, com acentuação.");
+
+        Pipe pipe = new Pipe();
+        ObjectOutputStream out = new ObjectOutputStream(pipe);
+        out.flush(); // Cabeçalho do stream, lido pelo construtor do ObjectInputStream
+        ObjectInputStream in = new ObjectInputStream(pipe.input());
+        roundTrip(out, in, pipe, msg); // A primeira mensagem do stream não é típica: mede a partir da segunda
+        System.out.println("Bytes por quadro: codec = " + MensagemCodec.encode(msg).length
+                + ", serialização = " + roundTrip(out, in, pipe, msg)
+                + ", stream por mensagem = " + serialize(msg).length);
+
+        for (int r = 1; r <= rounds; r++) { // As primeiras rodadas servem de aquecimento do JIT
+            long begin = System.nanoTime();
+            long check = 0;
+            for (int i = 0; i < messages; i++) {
+                byte[] frame = MensagemCodec.encode(msg);
+                check += MensagemCodec.decode(ByteBuffer.wrap(frame)).getConteudo().length();
+            }
+            double codecNanos = (double) (System.nanoTime() - begin) / messages;
+
+            begin = System.nanoTime();
+            for (int i = 0; i < messages; i++) {
+                check += roundTrip(out, in, pipe, msg);
+            }
+            double serializationNanos = (double) (System.nanoTime() - begin) / messages;
+
+            begin = System.nanoTime();
+            for (int i = 0; i < messages; i++) {
+                byte[] bytes = serialize(msg);
+                check += deserialize(bytes).getConteudo().length();
+            }
+            double perMessageNanos = (double) (System.nanoTime() - begin) / messages;
+
+            System.out.printf("Rodada %d: codec %.0f ns/msg, serialização %.0f ns/msg (%.1fx), stream por mensagem %.0f ns/msg (%.1fx) [%d]%n",
+                    r, codecNanos, serializationNanos, serializationNanos / codecNanos,
+                    perMessageNanos, perMessageNanos / codecNanos, check);
+        }
+    }
+
+    // Envia e recebe uma mensagem pelos streams de longa duração. Retorna os bytes que ela ocupou no "fio".
+    private static int roundTrip(ObjectOutputStream out, ObjectInputStream in, Pipe pipe, Mensagem msg)
+            throws IOException, ClassNotFoundException {
+        int before = pipe.written;
+        out.writeObject(msg);
+        out.reset(); // Esquece os objetos já enviados (e o descritor da classe)
+        out.flush();
+        int bytes = pipe.written - before;
+        if (in.readObject() == null) throw new IllegalStateException("Mensagem nula");
+        pipe.compact();
+        return bytes;
+    }
+
+    private static byte[] serialize(Mensagem msg) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(msg);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Mensagem deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (Mensagem) in.readObject();
+        }
+    }
+
+    // "Conexão" em memória: o ObjectOutputStream escreve num buffer reaproveitado e o ObjectInputStream lê
+    // dele, sem sockets nem threads. compact() descarta o que já foi lido.
+    private static final class Pipe extends OutputStream {
+        private byte[] buffer = new byte[1024];
+        private int readPos, writePos;
+        int written; // Total escrito desde o início
+
+        @Override
+        public void write(int b) {
+            ensure(1);
+            buffer[writePos++] = (byte) b;
+            written++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensure(len);
+            System.arraycopy(b, off, buffer, writePos, len);
+            writePos += len;
+            written += len;
+        }
+
+        private void ensure(int len) {
+            if (writePos + len > buffer.length) buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, writePos + len));
+        }
+
+        // O reset() deixa um byte (TC_RESET) que só é lido junto com a próxima mensagem
+        void compact() {
+            System.arraycopy(buffer, readPos, buffer, 0, writePos - readPos);
+            writePos -= readPos;
+            readPos = 0;
+        }
+
+        InputStream input() {
+            return new InputStream() {
+                @Override
+                public int read() {
+                    return readPos < writePos ? buffer[readPos++] & 0xFF : -1;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    if (len == 0) return 0;
+                    if (readPos == writePos) return -1;
+                    int n = Math.min(len, writePos - readPos);
+                    System.arraycopy(buffer, readPos, b, off, n);
+                    readPos += n;
+                    return n;
+                }
+
+                @Override
+                public int available() {
+                    return writePos - readPos;
+                }
+            };
+        }
+    }
+}
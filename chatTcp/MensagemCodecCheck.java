@@ -0,0 +1,168 @@
+package chatTcp;
+
+import java.io.*; // Streams bloqueantes usados por read()/write()
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+// Verificação do MensagemCodec: ida e volta (codifica e decodifica) e os quadros que devem ser recusados.
+// Cada caso imprime "ok" ou "FALHOU"; com alguma falha o programa termina com código 1.
+//
+// Uso: java chatTcp.MensagemCodecCheck
+public class MensagemCodecCheck {
+    private static int failures = 0;
+
+    public static void main(String[] args) throws Exception {
+        LocalDateTime time = LocalDateTime.of(2024, 5, 1, 10, 30, 15, 123_000_000); // Precisão do fio: milissegundos
+
+        // ### IDA E VOLTA ###
+        roundTrip("broadcast (destinatario null)", new Mensagem("ana", null, "oi, pessoal", time));
+        roundTrip("mensagem privada", new Mensagem("ana", "bruno", "só para você", time));
+        roundTrip("conteúdo vazio (login)", new Mensagem("ana", null, "", time));
+        roundTrip("acentos e outros alfabetos", new Mensagem("joão", "#café", "ação, ñandú, 日本語, Ελληνικά", time));
+        roundTrip("pares de surrogates (emoji)", new Mensagem("🙂", "usuário😀", "👍🏽 𝄞 😀😀", time));
+
+        Mensagem now = new Mensagem("ana", null, "agora");
+        Mensagem decoded = decode(MensagemCodec.encode(now));
+        check("horário preservado (truncado em ms)",
+                decoded.getHorario().equals(now.getHorario().truncatedTo(ChronoUnit.MILLIS)));
+
+        // Vários quadros chegando em pedaços, como no NioChatServer: decode() devolve null sem consumir nada
+        // enquanto o quadro não está inteiro
+        List<Mensagem> sent = List.of(new Mensagem("ana", null, "primeira", time),
+                new Mensagem("bruno", "ana", "x".repeat(300), time), // Varint de tamanho com 2 bytes
+                new Mensagem("caio", "#geral", "última 😀", time));
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        for (Mensagem msg : sent) wire.write(MensagemCodec.encode(msg));
+        for (int chunk : new int[] {1, 2, 3, 7, 64}) {
+            check("quadros divididos em leituras de " + chunk + " byte(s)", sameMessages(sent, decodeInChunks(wire.toByteArray(), chunk)));
+        }
+        DataInputStream stream = new DataInputStream(new ByteArrayInputStream(wire.toByteArray()));
+        List<Mensagem> fromStream = new ArrayList<>();
+        for (int i = 0; i < sent.size(); i++) fromStream.add(MensagemCodec.read(stream));
+        check("vários quadros pelo stream bloqueante", sameMessages(sent, fromStream));
+
+        // ### QUADROS RECUSADOS ###
+        byte[] frame = MensagemCodec.encode(new Mensagem("ana", null, "oi", time));
+        byte[] badVersion = frame.clone();
+        badVersion[1] = (byte) (MensagemCodec.VERSION + 1); // Byte 0 = varint do tamanho (1 byte), byte 1 = versão
+        rejects("versão desconhecida", badVersion);
+
+        byte[] oversized = {(byte) 0xFF, (byte) 0xFF, 0x7F}; // Varint de 3 bytes = 2 MB, acima de MAX_FRAME
+        rejects("tamanho acima de MAX_FRAME", oversized);
+        rejects("varint de tamanho com 4 bytes", new byte[] {(byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01});
+
+        byte[] truncated = frame.clone();
+        truncated[0] = (byte) (frame[0] - 3); // O cabeçalho diz que o corpo acaba antes do horário
+        rejects("corpo truncado", truncated);
+
+        byte[] leftover = frame.clone();
+        leftover[0] = (byte) (frame[0] + 1);
+        rejects("bytes sobrando no corpo", concat(leftover, new byte[] {0}));
+
+        try {
+            MensagemCodec.read(new DataInputStream(new ByteArrayInputStream(frame, 0, frame.length - 2)));
+            check("stream que termina no meio do quadro", false);
+        } catch (EOFException e) {
+            check("stream que termina no meio do quadro", true);
+        }
+
+        // ### LIMITE DO QUADRO ###
+        Mensagem big = new Mensagem("Servidor", "ana", "nome ".repeat(MensagemCodec.MAX_FRAME / 4), time);
+        try {
+            MensagemCodec.encode(big);
+            check("encode() recusa mensagem acima de MAX_FRAME", false);
+        } catch (IllegalArgumentException e) {
+            check("encode() recusa mensagem acima de MAX_FRAME", !MensagemCodec.fits(big));
+        }
+        StringBuilder joined = new StringBuilder();
+        boolean partsFit = true;
+        for (Mensagem part : MensagemCodec.split(big)) {
+            partsFit &= MensagemCodec.fits(part);
+            joined.append(decode(MensagemCodec.encode(part)).getConteudo());
+        }
+        check("split() gera partes que cabem e preservam o conteúdo", partsFit && joined.toString().equals(big.getConteudo()));
+
+        System.out.println(failures == 0 ? "\nTodos os casos passaram." : "\n" + failures + " caso(s) falharam.");
+        if (failures > 0) System.exit(1);
+    }
+
+    private static void roundTrip(String name, Mensagem msg) throws IOException {
+        byte[] frame = MensagemCodec.encode(msg);
+        Mensagem fromBuffer = decode(frame);
+        Mensagem fromStream = MensagemCodec.read(new DataInputStream(new ByteArrayInputStream(frame)));
+        check(name, same(msg, fromBuffer) && same(msg, fromStream));
+    }
+
+    // O quadro deve ser recusado pelos dois caminhos de leitura (buffer e stream)
+    private static void rejects(String name, byte[] frame) {
+        boolean buffer = false, stream = false;
+        try {
+            MensagemCodec.decode(ByteBuffer.wrap(frame));
+        } catch (StreamCorruptedException e) {
+            buffer = true;
+        } catch (IOException e) { /* exceção errada: buffer continua false */ }
+        try {
+            MensagemCodec.read(new DataInputStream(new ByteArrayInputStream(frame)));
+        } catch (StreamCorruptedException e) {
+            stream = true;
+        } catch (IOException e) { /* exceção errada */ }
+        check(name + " recusado", buffer && stream);
+    }
+
+    private static Mensagem decode(byte[] frame) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+        Mensagem msg = MensagemCodec.decode(buffer);
+        return buffer.hasRemaining() ? null : msg;
+    }
+
+    // Simula as leituras do NioChatServer: acrescenta 'chunk' bytes por vez e decodifica o que estiver completo
+    private static List<Mensagem> decodeInChunks(byte[] wire, int chunk) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(wire.length);
+        List<Mensagem> received = new ArrayList<>();
+        for (int from = 0; from < wire.length; from += chunk) {
+            buffer.put(wire, from, Math.min(chunk, wire.length - from));
+            buffer.flip();
+            Mensagem msg;
+            while (true) {
+                int before = buffer.position();
+                msg = MensagemCodec.decode(buffer);
+                if (msg == null) {
+                    if (buffer.position() != before) return null; // Quadro incompleto não pode ser consumido
+                    break;
+                }
+                received.add(msg);
+            }
+            buffer.compact();
+        }
+        return buffer.position() == 0 ? received : null;
+    }
+
+    private static boolean sameMessages(List<Mensagem> expected, List<Mensagem> actual) {
+        if (actual == null || actual.size() != expected.size()) return false;
+        for (int i = 0; i < expected.size(); i++) {
+            if (!same(expected.get(i), actual.get(i))) return false;
+        }
+        return true;
+    }
+
+    private static boolean same(Mensagem a, Mensagem b) {
+        return b != null && a.getRemetente().equals(b.getRemetente())
+                && (a.getDestinatario() == null ? b.getDestinatario() == null : a.getDestinatario().equals(b.getDestinatario()))
+                && a.getConteudo().equals(b.getConteudo()) && a.getHorario().equals(b.getHorario());
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] both = new byte[a.length + b.length];
+        System.arraycopy(a, 0, both, 0, a.length);
+        System.arraycopy(b, 0, both, a.length, b.length);
+        return both;
+    }
+
+    private static void check(String name, boolean ok) {
+        System.out.println((ok ? "ok      " : "FALHOU  ") + name);
+        if (!ok) failures++;
+    }
+}
@@ -0,0 +1,453 @@
+package chatTcp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+// Histórico durável das mensagens de sala: um log só de acréscimo, em segmentos de arquivo mapeados em memória.
+//
+// - Cada registro é o próprio quadro do MensagemCodec (o mesmo buffer já codificado para o broadcast), então
+//   gravar é uma cópia para o mapeamento e o replay envia fatias do segmento direto para os clientes.
+//   O primeiro byte zero marca o fim dos dados (o resto do segmento é pré-alocado com zeros); um registro
+//   incompleto depois de uma queda também para a leitura ali.
+// - fsync em grupo: as gravações não esperam o disco; uma thread de fundo chama force() sobre o trecho
+//   ainda não sincronizado a cada SYNC_INTERVAL_MS, juntando todas as mensagens desse intervalo.
+// - Troca de segmento: sob o lock só se trocam referências. A thread de fundo deixa o próximo segmento já
+//   mapeado e faz o force() do que sobrou do segmento fechado, sem parar quem está gravando.
+// - Índice esparso por sala (em memória, reconstruído na abertura lendo os segmentos): uma entrada a cada
+//   INDEX_INTERVAL mensagens da sala e na primeira mensagem da sala em cada segmento. O replay começa na
+//   entrada mais próxima e lê em sequência a partir dali.
+// - Um único relógio: o horário de cada registro é o horario da própria mensagem, que o ChatServer carimba
+//   ao receber (nunca o do cliente). Índice, filtro do since() e retenção usam esse valor, antes e depois
+//   de reabrir o log.
+// - Retenção: segmentos fechados mais antigos que o limite de idade, ou que passam do limite de tamanho
+//   total, são apagados (junto com suas entradas do índice).
+final class MessageLog {
+    static final int SEGMENT_BYTES = 32 * 1024 * 1024;
+    private static final int INDEX_INTERVAL = 64;
+    private static final long SYNC_INTERVAL_MS = 50;
+    private static final long RETENTION_CHECK_MS = 10_000;
+    private static final int MAX_REPLAY = 500; // Limite de mensagens por replay (a fila de saída do cliente é limitada)
+    private static final String STAGING_SUFFIX = ".log.novo"; // Próximo segmento ainda em preparo (ver prepareSpare)
+
+    private final Path dir;
+    private final long retentionMillis;
+    private final long retentionBytes;
+    private final ReentrantLock lock = new ReentrantLock(); // Protege segmentos, índice e posição de escrita
+    private final List<Segment> segments = new ArrayList<>(); // Em ordem; o último é o segmento atual
+    private final Map<String, RoomState> rooms = new HashMap<>();
+    private Segment current;
+    private final List<Segment> sealed = new ArrayList<>(); // Segmentos fechados com trecho ainda sem force()
+    private Segment spare; // Próximo segmento, mapeado de antemão pela thread de fundo
+    private volatile boolean closed;
+
+    private static final class Segment {
+        final long id;
+        final Path path;
+        final MappedByteBuffer buffer;
+        int end; // Fim dos dados
+        int synced; // Até onde já houve force()
+        long lastTimestamp; // Horário (epoch-millis) da última mensagem, usado pela retenção
+
+        Segment(long id, Path path, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+
+    private static final class IndexEntry {
+        final long roomSeq; // Número da mensagem dentro da sala
+        final long timestamp;
+        final Segment segment;
+        final int position;
+
+        IndexEntry(long roomSeq, long timestamp, Segment segment, int position) {
+            this.roomSeq = roomSeq;
+            this.timestamp = timestamp;
+            this.segment = segment;
+            this.position = position;
+        }
+    }
+
+    private static final class RoomState {
+        long count; // Mensagens da sala já gravadas (inclusive as de segmentos apagados)
+        final List<IndexEntry> entries = new ArrayList<>();
+    }
+
+    private MessageLog(Path dir, long retentionMillis, long retentionBytes) {
+        this.dir = dir;
+        this.retentionMillis = retentionMillis;
+        this.retentionBytes = retentionBytes;
+    }
+
+    // Abre (ou cria) o log no diretório, reconstrói o índice e inicia a thread de fsync/retenção
+    static MessageLog open(Path dir, long retentionMillis, long retentionBytes) throws IOException {
+        Files.createDirectories(dir);
+        MessageLog log = new MessageLog(dir, retentionMillis, retentionBytes);
+        List<Path> files, staged;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.filter(p -> p.getFileName().toString().endsWith(".log")).sorted().toList();
+        }
+        try (Stream<Path> list = Files.list(dir)) {
+            staged = list.filter(p -> p.getFileName().toString().endsWith(STAGING_SUFFIX)).toList();
+        }
+        for (Path file : staged) {
+            Files.deleteIfExists(file); // Próximo segmento que a thread de fundo preparava quando o servidor caiu
+        }
+        for (Path file : files) {
+            long id = Long.parseLong(file.getFileName().toString().replace(".log", ""));
+            Segment segment = new Segment(id, file, map(file));
+            log.segments.add(segment);
+            log.recover(segment);
+        }
+        if (log.segments.isEmpty()) {
+            log.segments.add(log.createSegment(0));
+        }
+        log.current = log.segments.get(log.segments.size() - 1);
+        log.current.synced = log.current.end;
+
+        Thread syncer = new Thread(log::syncLoop, "chat-historico-fsync");
+        syncer.setDaemon(true);
+        syncer.start();
+        return log;
+    }
+
+    // Acrescenta o quadro (a codificação de msg) de uma mensagem da sala. Não espera o fsync (ver syncLoop).
+    // O horário do índice e da retenção é o da própria mensagem, o mesmo que recover() e scan() leem do quadro.
+    void append(String room, Mensagem msg, ByteBuffer frame) throws IOException {
+        long timestamp = epochMillis(msg);
+        int length = frame.remaining();
+        lock.lock();
+        try {
+            if (closed) return;
+            if (current.end + length >= SEGMENT_BYTES) { // >= : sempre sobra ao menos um zero marcando o fim
+                roll();
+            }
+            int position = current.end;
+            current.buffer.put(position, frame.duplicate(), frame.position(), length);
+            current.end += length;
+            current.lastTimestamp = timestamp;
+            index(room, timestamp, current, position);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Últimas n mensagens da sala, em ordem, como fatias somente leitura dos quadros gravados
+    List<ByteBuffer> lastMessages(String room, int n) {
+        lock.lock();
+        IndexEntry start;
+        long fromSeq;
+        try {
+            RoomState state = rooms.get(room);
+            if (state == null || state.entries.isEmpty() || n <= 0) return List.of();
+            fromSeq = Math.max(0, state.count - Math.min(n, MAX_REPLAY));
+            int i = lastEntry(state.entries, e -> e.roomSeq <= fromSeq);
+            start = state.entries.get(Math.max(i, 0));
+        } finally {
+            lock.unlock();
+        }
+        return scan(room, start, fromSeq, Long.MIN_VALUE);
+    }
+
+    // Mensagens da sala a partir do horário dado (epoch-millis), até MAX_REPLAY
+    List<ByteBuffer> since(String room, long timestamp) {
+        lock.lock();
+        IndexEntry start;
+        try {
+            RoomState state = rooms.get(room);
+            if (state == null || state.entries.isEmpty()) return List.of();
+            int i = lastEntry(state.entries, e -> e.timestamp < timestamp);
+            start = state.entries.get(Math.max(i, 0));
+        } finally {
+            lock.unlock();
+        }
+        return scan(room, start, 0, timestamp);
+    }
+
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            for (Segment segment : sealed) {
+                segment.buffer.force();
+            }
+            sealed.clear();
+            current.buffer.force();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Lê em sequência a partir da entrada do índice, guardando as mensagens da sala com número >= fromSeq
+    // e horário >= fromTime. O fim de cada segmento é lido sob o lock; os bytes, fora dele.
+    // O cursor é o id do próximo segmento, não a posição na lista: a retenção pode apagar segmentos do
+    // começo entre uma leitura e outra. Se o segmento esperado sumiu, retoma pela entrada do índice da sala
+    // no primeiro segmento que restou (com o número da mensagem dali).
+    private List<ByteBuffer> scan(String room, IndexEntry start, long fromSeq, long fromTime) {
+        String recipient = "#" + room;
+        List<ByteBuffer> result = new ArrayList<>();
+        long seq = start.roomSeq;
+        int position = start.position;
+        long nextId = start.segment.id;
+        while (result.size() < MAX_REPLAY) {
+            Segment segment;
+            int end;
+            lock.lock();
+            try {
+                segment = segmentFrom(nextId);
+                if (segment != null && segment.id != nextId) {
+                    IndexEntry entry = firstEntryFrom(room, nextId);
+                    if (entry == null) break;
+                    segment = entry.segment;
+                    seq = entry.roomSeq;
+                    position = entry.position;
+                }
+                if (segment == null) break;
+                end = segment.end;
+            } finally {
+                lock.unlock();
+            }
+            ByteBuffer data = segment.buffer.duplicate().limit(end).position(position);
+            try {
+                while (data.hasRemaining() && result.size() < MAX_REPLAY) {
+                    int frameStart = data.position();
+                    Mensagem msg = MensagemCodec.decode(data);
+                    if (msg == null) break;
+                    if (recipient.equals(msg.getDestinatario())) {
+                        if (seq >= fromSeq && epochMillis(msg) >= fromTime) {
+                            result.add(data.duplicate().position(frameStart).limit(data.position()).slice().asReadOnlyBuffer());
+                        }
+                        seq++;
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Registro inválido no histórico " + segment.path + ": " + e.getMessage());
+            }
+            nextId = segment.id + 1;
+            position = 0;
+        }
+        return result;
+    }
+
+    // Lê um segmento existente até o fim dos dados, reconstruindo contadores e índice
+    private void recover(Segment segment) {
+        ByteBuffer data = segment.buffer.duplicate();
+        while (data.hasRemaining()) {
+            int position = data.position();
+            Mensagem msg;
+            try {
+                if (data.get(position) == 0) break; // Fim dos dados
+                msg = MensagemCodec.decode(data);
+            } catch (IOException e) {
+                msg = null; // Registro incompleto (queda durante a escrita): os dados terminam aqui
+            }
+            if (msg == null) {
+                data.position(position);
+                break;
+            }
+            String recipient = msg.getDestinatario();
+            if (recipient != null && recipient.startsWith("#")) {
+                long timestamp = epochMillis(msg);
+                segment.lastTimestamp = timestamp;
+                index(recipient.substring(1), timestamp, segment, position);
+            }
+        }
+        segment.end = data.position();
+        // Zera um eventual resto de registro incompleto (no máximo um quadro) para não ser lido depois
+        // dos próximos acréscimos
+        int limit = (int) Math.min(segment.buffer.limit(), (long) segment.end + MensagemCodec.MAX_FRAME + 4);
+        for (int i = segment.end; i < limit; i++) {
+            segment.buffer.put(i, (byte) 0);
+        }
+    }
+
+    private void index(String room, long timestamp, Segment segment, int position) {
+        RoomState state = rooms.computeIfAbsent(room, r -> new RoomState());
+        List<IndexEntry> entries = state.entries;
+        if (entries.isEmpty() || state.count % INDEX_INTERVAL == 0
+                || entries.get(entries.size() - 1).segment != segment) {
+            entries.add(new IndexEntry(state.count, timestamp, segment, position));
+        }
+        state.count++;
+    }
+
+    // Fecha o segmento atual e passa para o próximo. Chamado com o lock (append roda nos handlers e nos laços
+    // NIO): o force() do segmento fechado fica para a thread de fundo, e o próximo já vem mapeado por ela.
+    // Só mapeia aqui, com o lock, se a thread de fundo ainda não preparou o próximo.
+    private void roll() throws IOException {
+        Segment next = spare;
+        spare = null;
+        if (next == null || next.id != current.id + 1) {
+            next = createSegment(current.id + 1);
+        }
+        sealed.add(current);
+        current = next;
+        segments.add(current);
+    }
+
+    private Segment createSegment(long id) throws IOException {
+        Path path = segmentPath(id);
+        return new Segment(id, path, map(path));
+    }
+
+    private Path segmentPath(long id) {
+        return dir.resolve(String.format("%020d.log", id));
+    }
+
+    private static MappedByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_BYTES); // O mapeamento continua válido após fechar o canal
+        }
+    }
+
+    // Thread de fundo: fsync em grupo do trecho novo do segmento atual e, de tempos em tempos, a retenção
+    private void syncLoop() {
+        long nextRetentionCheck = 0;
+        while (!closed) {
+            try {
+                Thread.sleep(SYNC_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            List<Segment> toSync = new ArrayList<>();
+            List<int[]> ranges = new ArrayList<>(); // {de, até} de cada segmento em toSync
+            long nextId;
+            lock.lock();
+            try {
+                sealed.add(current);
+                for (Segment segment : sealed) {
+                    if (segment.end > segment.synced) {
+                        toSync.add(segment);
+                        ranges.add(new int[] {segment.synced, segment.end});
+                        segment.synced = segment.end;
+                    }
+                }
+                sealed.clear();
+                nextId = spare == null ? current.id + 1 : -1;
+            } finally {
+                lock.unlock();
+            }
+            // Fora do lock: as gravações continuam enquanto o disco sincroniza
+            for (int i = 0; i < toSync.size(); i++) {
+                int[] range = ranges.get(i);
+                toSync.get(i).buffer.force(range[0], range[1] - range[0]);
+            }
+            if (nextId >= 0) {
+                prepareSpare(nextId);
+            }
+            long now = System.currentTimeMillis();
+            if (now >= nextRetentionCheck) {
+                applyRetention(now);
+                nextRetentionCheck = now + RETENTION_CHECK_MS;
+            }
+        }
+    }
+
+    // Mapeia de antemão o próximo segmento, para a troca em append() não esperar o sistema de arquivos.
+    // O arquivo é preparado com um nome provisório: se roll() não esperar e criar o segmento 'id' ele mesmo,
+    // a escrita abaixo não pode cair sobre os registros que append() já está gravando lá. Só vira o
+    // segmento 'id' (rename, sob o lock) se ainda for o próximo.
+    private void prepareSpare(long id) {
+        Path path = segmentPath(id);
+        Path staging = path.resolveSibling(path.getFileName() + STAGING_SUFFIX);
+        MappedByteBuffer buffer;
+        try {
+            buffer = map(staging);
+            buffer.put(0, (byte) 0); // Primeira escrita no arquivo novo (falta de página) também fica aqui
+        } catch (IOException e) {
+            System.err.println("Erro ao preparar o próximo segmento do histórico: " + e.getMessage());
+            return;
+        }
+        lock.lock();
+        try {
+            if (spare == null && current.id + 1 == id) {
+                Files.move(staging, path, StandardCopyOption.ATOMIC_MOVE); // O mapeamento continua válido após o rename
+                spare = new Segment(id, path, buffer);
+                return;
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao preparar o próximo segmento do histórico: " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+        try {
+            Files.deleteIfExists(staging); // O segmento já foi criado por roll(): descarta o provisório
+        } catch (IOException e) {
+            System.err.println("Erro ao apagar segmento provisório do histórico: " + e.getMessage());
+        }
+    }
+
+    // Apaga os segmentos fechados mais antigos enquanto passarem do limite de idade ou de tamanho total
+    private void applyRetention(long now) {
+        List<Segment> removed = new ArrayList<>();
+        lock.lock();
+        try {
+            while (segments.size() > 1) {
+                Segment oldest = segments.get(0);
+                boolean tooOld = now - oldest.lastTimestamp > retentionMillis;
+                boolean tooBig = (long) segments.size() * SEGMENT_BYTES > retentionBytes;
+                if (!tooOld && !tooBig) break;
+                segments.remove(0);
+                removed.add(oldest);
+                for (RoomState state : rooms.values()) { // Entradas ficam em ordem: as do segmento apagado estão no começo
+                    while (!state.entries.isEmpty() && state.entries.get(0).segment == oldest) {
+                        state.entries.remove(0);
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (Segment segment : removed) {
+            try {
+                Files.deleteIfExists(segment.path); // Replays em andamento continuam lendo o mapeamento
+                System.out.println("Histórico: segmento " + segment.path.getFileName() + " apagado pela retenção");
+            } catch (IOException e) {
+                System.err.println("Erro ao apagar segmento do histórico: " + e.getMessage());
+            }
+        }
+    }
+
+    // Primeiro segmento com id >= id, ou null. Chamado com o lock.
+    private Segment segmentFrom(long id) {
+        for (Segment segment : segments) {
+            if (segment.id >= id) return segment;
+        }
+        return null;
+    }
+
+    // Primeira entrada do índice da sala num segmento com id >= id, ou null. Chamado com o lock.
+    private IndexEntry firstEntryFrom(String room, long id) {
+        RoomState state = rooms.get(room);
+        if (state == null) return null;
+        int i = lastEntry(state.entries, e -> e.segment.id < id) + 1;
+        return i < state.entries.size() ? state.entries.get(i) : null;
+    }
+
+    // Posição da última entrada que satisfaz a condição (as entradas estão em ordem), ou -1
+    private static int lastEntry(List<IndexEntry> entries, Predicate<IndexEntry> before) {
+        int lo = 0, hi = entries.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (before.test(entries.get(mid))) lo = mid + 1; else hi = mid;
+        }
+        return lo - 1;
+    }
+
+    private static long epochMillis(Mensagem msg) {
+        return msg.getHorario().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
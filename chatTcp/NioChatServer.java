@@ -0,0 +1,349 @@
+package chatTcp;
+
+import java.io.IOException; // Exceções de entrada e saída
+import java.net.InetSocketAddress; // Endereço (porta) em que o servidor escuta
+import java.nio.ByteBuffer; // Buffers de leitura e escrita dos canais
+import java.nio.channels.*; // Canais não bloqueantes, Selector e SelectionKey
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue; // Filas seguras para várias threads
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Motor alternativo do ChatServer (java chatTcp.ChatServer --motor=nio).
+// Em vez de uma thread bloqueada por cliente, poucos laços de eventos (um Selector por núcleo)
+// atendem todos os SocketChannels em modo não bloqueante. A lógica do chat é a do ChatServer.
+//
+// - O ServerSocketChannel fica registrado no primeiro laço; cada conexão aceita é entregue a um laço
+//   (round-robin) e só esse laço lê e escreve no canal dela.
+// - Leitura: o laço lê num buffer direto compartilhado e decodifica ali mesmo os quadros completos.
+//   Só o pedaço de um quadro incompleto é copiado para o buffer da própria conexão, então uma conexão
+//   ociosa não ocupa buffer nenhum (o que permite dezenas de milhares de clientes conectados).
+// - Escrita: send() pode ser chamado de qualquer laço; o quadro entra na fila de saída limitada da conexão
+//   (OutboundQueue) e o laço dono escreve o que o socket aceitar, registrando interesse em OP_WRITE para o
+//   que sobrar. Os laços nunca bloqueiam: com a política "bloquear", fila cheia desconecta o cliente.
+// - Agrupamento: os quadros pendentes de uma conexão vão numa única escrita agrupada (writev) de até
+//   MAX_GATHER quadros. Envios feitos pelo próprio laço (o fan-out das mensagens que ele leu) são escritos no
+//   fim da volta do laço, ou antes, quando a conexão junta um lote cheio; uma rajada lida de uma vez vira
+//   poucas escritas por destinatário. Os de outras threads já são agrupados por flushScheduled.
+public class NioChatServer {
+    private static final int READ_BUFFER_BYTES = 64 * 1024; // Buffer de leitura compartilhado por laço
+    private static final int MIN_PARTIAL_BYTES = 4 * 1024; // Tamanho mínimo do buffer de quadro incompleto
+    private static final int MAX_GATHER = 64; // Quadros por escrita agrupada
+
+    private static EventLoop[] loops;
+    private static int nextLoop; // Próximo laço a receber uma conexão (só usado pelo laço que aceita)
+
+    // Inicia os laços de eventos e aguarda o laço que aceita conexões terminar
+    static void run(int port, int loopCount) {
+        try {
+            ServerSocketChannel serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(port), 1024); // Fila de conexões pendentes maior para rajadas de login
+            serverChannel.configureBlocking(false);
+
+            loops = new EventLoop[Math.max(1, loopCount)];
+            for (int i = 0; i < loops.length; i++) {
+                loops[i] = new EventLoop(i);
+            }
+            serverChannel.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+            for (EventLoop loop : loops) {
+                loop.start();
+            }
+            System.out.println("Servidor NIO iniciado na porta " + port + " (" + loops.length + " laços de eventos)");
+            loops[0].join();
+        } catch (IOException e) {
+            System.err.println("Erro no servidor: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Aceita todas as conexões pendentes e distribui entre os laços
+    private static void accept(ServerSocketChannel serverChannel) throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true); // Mensagens de chat são pequenas: sem esperar pelo algoritmo de Nagle
+            EventLoop loop = loops[nextLoop];
+            nextLoop = (nextLoop + 1) % loops.length;
+            SocketChannel accepted = channel;
+            loop.execute(() -> loop.register(accepted));
+        }
+    }
+
+    // Um laço de eventos: uma thread com um Selector e as conexões atribuídas a ele
+    static class EventLoop extends Thread {
+        private final Selector selector;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>(); // Tarefas pedidas por outras threads
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_BYTES);
+        private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER]; // Lote da escrita agrupada (só esta thread usa)
+        private final List<NioConnection> pendingFlush = new ArrayList<>(); // Conexões a escrever no fim da volta
+
+        EventLoop(int id) throws IOException {
+            super("chat-nio-" + id);
+            this.selector = Selector.open();
+        }
+
+        // Agenda uma tarefa para rodar nesta thread (registro de canal, escrita, fechamento)
+        void execute(Runnable task) {
+            tasks.add(task);
+            if (Thread.currentThread() != this) {
+                selector.wakeup(); // Acorda o select() para a tarefa não esperar pelo próximo evento
+            }
+        }
+
+        private void register(SocketChannel channel) {
+            try {
+                NioConnection connection = new NioConnection(channel, this);
+                connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            } catch (IOException e) {
+                ChatLog.error("Erro ao registrar conexão de {}: {}", channel, e.getMessage());
+                try { channel.close(); } catch (IOException ignored) { /* ignora */ }
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    // Se há tarefas pendentes (agendadas por esta própria thread), não bloqueia no select
+                    if (tasks.isEmpty()) {
+                        selector.select();
+                    } else {
+                        selector.selectNow();
+                    }
+                } catch (IOException e) {
+                    System.err.println("Erro no Selector de " + getName() + ": " + e.getMessage());
+                    return;
+                }
+
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+
+                    if (key.isAcceptable()) {
+                        try {
+                            accept((ServerSocketChannel) key.channel());
+                        } catch (IOException e) {
+                            ChatLog.error("Erro ao aceitar conexão em {}: {}", getName(), e.getMessage());
+                        }
+                        continue;
+                    }
+
+                    NioConnection connection = (NioConnection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            connection.onReadable(readBuffer);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.flush();
+                        }
+                    } catch (IOException | CancelledKeyException e) {
+                        connection.closeNow();
+                    } catch (RuntimeException e) {
+                        ChatLog.error("Exceção inesperada na conexão de {}: {}", connection.username, e); // O log inclui o stack trace
+                        connection.closeNow();
+                    }
+                }
+
+                // Escreve de uma vez o que esta volta enfileirou (o índice aceita conexões acrescentadas durante o laço)
+                for (int i = 0; i < pendingFlush.size(); i++) {
+                    NioConnection connection = pendingFlush.get(i);
+                    connection.flushPending = false;
+                    connection.flushOrClose();
+                }
+                pendingFlush.clear();
+            }
+        }
+    }
+
+    // Estado de um cliente no motor NIO. Leitura, escrita e fechamento acontecem só na thread do laço dono;
+    // send() e close() podem ser chamados de qualquer thread e são repassados a ele.
+    static class NioConnection implements ChatServer.Connection {
+        private final SocketChannel channel;
+        private final EventLoop loop;
+        private SelectionKey key;
+        private volatile String username; // null até a mensagem de login chegar
+        private ByteBuffer partial; // Quadro incompleto (modo escrita), null quando não há
+        private final OutboundQueue<ByteBuffer> outbound = new OutboundQueue<>(); // Quadros ainda não escritos
+        // Quadros já fora da fila que o socket não aceitou inteiros (null quase sempre; fora da fila para o descarte
+        // não cortar um quadro ao meio)
+        private ByteBuffer[] unwritten;
+        private final AtomicBoolean flushScheduled = new AtomicBoolean();
+        private boolean flushPending; // Já está em loop.pendingFlush (só a thread do laço usa)
+        private volatile boolean closed;
+
+        NioConnection(SocketChannel channel, EventLoop loop) {
+            this.channel = channel;
+            this.loop = loop;
+        }
+
+        @Override
+        public String getUsername() {
+            return username;
+        }
+
+        // Enfileira uma view própria do quadro compartilhado (mesmos bytes, posição independente)
+        @Override
+        public void send(ByteBuffer frame) {
+            if (closed) return;
+            if (!outbound.offer(frame.duplicate(), false)) { // Fila cheia e a política manda desconectar
+                ChatLog.warn("{} desconectado(a): fila de saída cheia (cliente lento).", username);
+                close();
+                return;
+            }
+            if (Thread.currentThread() == loop) {
+                if (outbound.size() >= MAX_GATHER) { // Lote cheio: escreve já, sem esperar o fim da volta
+                    flushOrClose();
+                } else if (!flushPending) { // Escreve no fim da volta do laço, junto com os próximos quadros
+                    flushPending = true;
+                    loop.pendingFlush.add(this);
+                }
+            } else if (flushScheduled.compareAndSet(false, true)) { // Um agendamento basta para vários quadros
+                loop.execute(() -> {
+                    flushScheduled.set(false);
+                    flushOrClose();
+                });
+            }
+        }
+
+        @Override
+        public int queueDepth() {
+            return outbound.size();
+        }
+
+        @Override
+        public long droppedFrames() {
+            return outbound.dropped();
+        }
+
+        @Override
+        public void close() {
+            if (Thread.currentThread() == loop) {
+                closeNow();
+            } else {
+                loop.execute(this::closeNow);
+            }
+        }
+
+        // Lê o que chegou e processa todos os quadros completos
+        private void onReadable(ByteBuffer shared) throws IOException {
+            ByteBuffer in;
+            if (partial == null) {
+                in = shared;
+                in.clear();
+            } else {
+                in = partial; // Continua o quadro incompleto no buffer da conexão
+            }
+            if (channel.read(in) < 0) {
+                closeNow(); // Cliente fechou a conexão
+                return;
+            }
+            in.flip();
+
+            while (!closed) {
+                int begin = in.position();
+                long start = System.nanoTime();
+                Mensagem msg = MensagemCodec.decode(in);
+                if (msg == null) break; // Quadro incompleto
+                ChatMetrics.received(in.position() - begin, start);
+                onMessage(msg);
+            }
+            if (closed) return;
+
+            // Guarda o resto (quadro incompleto) no buffer da conexão, com espaço para o quadro inteiro
+            if (!in.hasRemaining()) {
+                partial = null; // Nada pendente: a conexão volta a não ocupar buffer
+                return;
+            }
+            int needed = Math.max(MensagemCodec.frameLength(in), MIN_PARTIAL_BYTES);
+            if (in == partial && partial.capacity() >= needed) {
+                partial.compact();
+            } else {
+                partial = ByteBuffer.allocate(needed).put(in);
+            }
+        }
+
+        // A primeira mensagem é o login; as seguintes vão para a lógica do chat
+        private void onMessage(Mensagem msg) {
+            if (username == null) {
+                username = msg.getRemetente();
+                ChatServer.registerClient(this);
+                ChatLog.info("{} conectou-se. IP: {}", username, channel.socket().getInetAddress().getHostAddress()); // Log
+            } else {
+                ChatServer.processMessage(this, msg);
+            }
+        }
+
+        // Escreve os quadros pendentes, em escritas agrupadas, até a fila esvaziar ou o socket não aceitar mais
+        private void flush() throws IOException {
+            ByteBuffer[] gather = loop.gather;
+            while (true) {
+                int count = 0;
+                if (unwritten != null) { // Começa pelo que sobrou da última escrita
+                    count = unwritten.length;
+                    System.arraycopy(unwritten, 0, gather, 0, count);
+                    unwritten = null;
+                }
+                ByteBuffer frame;
+                while (count < gather.length && (frame = outbound.poll()) != null) {
+                    gather[count++] = frame;
+                }
+                if (count == 0) break;
+
+                channel.write(gather, 0, count);
+                ChatMetrics.wrote();
+                int done = 0;
+                while (done < count && !gather[done].hasRemaining()) {
+                    ChatMetrics.sent(gather[done].limit());
+                    done++;
+                }
+                if (done < count) { // Buffer do socket cheio: continua quando ficar gravável
+                    unwritten = Arrays.copyOfRange(gather, done, count);
+                    Arrays.fill(gather, 0, count, null);
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+                Arrays.fill(gather, 0, count, null);
+                if (count < gather.length) break; // A fila esvaziou
+            }
+            if ((key.interestOps() & SelectionKey.OP_WRITE) != 0) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            }
+        }
+
+        private void flushOrClose() {
+            if (closed) return;
+            try {
+                flush();
+            } catch (IOException | CancelledKeyException e) {
+                closeNow();
+            }
+        }
+
+        private void closeNow() {
+            if (closed) return;
+            closed = true;
+            if (key != null) key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) { /* ignora */ }
+            outbound.clear();
+            unwritten = null;
+            partial = null;
+            if (username != null) {
+                ChatLog.info("{} desconectou-se.", username);
+            }
+            ChatServer.unregisterClient(this);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package chatTcp;
+
+import java.util.concurrent.ArrayBlockingQueue; // Fila limitada; usa ReentrantLock por dentro (sem synchronized)
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Fila de saída limitada de uma conexão: quem faz broadcast só enfileira o quadro e segue em frente,
+// e um escritor próprio da conexão (thread no ChatServer, laço de eventos no NioChatServer) esvazia a fila.
+// Assim um cliente lento não atrasa o remetente nem os demais destinatários.
+//
+// Quando a fila enche, vale a política configurada na inicialização do servidor:
+//   descartar   -> descarta os quadros mais antigos para abrir espaço (padrão)
+//   desconectar -> desconecta o cliente lento
+//   bloquear    -> o remetente espera até 'blockTimeoutMillis' por espaço; se não houver, desconecta
+final class OutboundQueue<T> {
+    enum Policy { DROP_OLDEST, DISCONNECT, BLOCK }
+
+    // Configuração global, definida pelas opções de linha de comando do ChatServer
+    static volatile int capacity = 1024; // Quadros por conexão
+    static volatile Policy policy = Policy.DROP_OLDEST;
+    static volatile long blockTimeoutMillis = 1000;
+    // Quanto o escritor de uma conexão ocupada espera por mais quadros antes de descarregar o lote (--linger-us)
+    static volatile long lingerNanos = 100_000;
+
+    private final ArrayBlockingQueue<T> queue;
+    private final Policy onFull; // Política desta fila
+    private final AtomicLong dropped = new AtomicLong(); // Quadros descartados pela política DROP_OLDEST
+
+    // Fila de um cliente: usa a configuração global
+    OutboundQueue() {
+        this(capacity, policy);
+    }
+
+    // Fila com configuração própria (ex.: ligações entre nós do cluster, ver ClusterNode)
+    OutboundQueue(int capacity, Policy onFull) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.onFull = onFull;
+    }
+
+    // Converte o valor da opção --politica= na política correspondente
+    static Policy parsePolicy(String name) {
+        switch (name) {
+            case "descartar": return Policy.DROP_OLDEST;
+            case "desconectar": return Policy.DISCONNECT;
+            case "bloquear": return Policy.BLOCK;
+            default: throw new IllegalArgumentException("Política de fila desconhecida: " + name + " (use descartar, desconectar ou bloquear)");
+        }
+    }
+
+    // Enfileira um quadro. Retorna false se, pela política, o cliente deve ser desconectado.
+    // mayBlock = false impede a espera da política BLOCK (ela passa a se comportar como DISCONNECT).
+    boolean offer(T item, boolean mayBlock) {
+        if (queue.offer(item)) {
+            return true;
+        }
+        switch (onFull) {
+            case DROP_OLDEST:
+                do {
+                    if (queue.poll() != null) dropped.incrementAndGet(); // Abre espaço descartando o mais antigo
+                } while (!queue.offer(item));
+                return true;
+            case BLOCK:
+                if (!mayBlock) return false;
+                try {
+                    return queue.offer(item, blockTimeoutMillis, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            default:
+                return false;
+        }
+    }
+
+    // Próximo quadro, esperando se a fila estiver vazia (escritor com thread própria)
+    T take() throws InterruptedException {
+        return queue.take();
+    }
+
+    // Próximo quadro, ou null se a fila estiver vazia (escritor do laço de eventos)
+    T poll() {
+        return queue.poll();
+    }
+
+    // Próximo quadro, esperando no máximo 'nanos' (linger do escritor com thread própria)
+    T poll(long nanos) throws InterruptedException {
+        return queue.poll(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    int size() {
+        return queue.size();
+    }
+
+    long dropped() {
+        return dropped.get();
+    }
+
+    void clear() {
+        queue.clear();
+    }
+}
@@ -0,0 +1,91 @@
+package chatTcp;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap; // Mapas seguros para várias threads
+
+// Índice sala -> membros usado pelo ChatServer.
+//
+// - Cada sala guarda seus membros num array imutável (cópia na escrita): o broadcast percorre um
+//   snapshot sem lock nenhum, e o custo de uma mensagem é proporcional ao tamanho da sala.
+// - Entradas e saídas trocam o array dentro de ConcurrentHashMap.compute, que trava só a posição
+//   (bin) daquela sala no mapa: salas diferentes são atualizadas em paralelo.
+// - A sala some do índice quando o último membro sai.
+final class RoomIndex {
+    private static final ChatServer.Connection[] EMPTY = new ChatServer.Connection[0];
+
+    private final ConcurrentHashMap<String, ChatServer.Connection[]> rooms = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<ChatServer.Connection, Set<String>> memberships = new ConcurrentHashMap<>(); // Salas de cada conexão
+
+    // Adiciona a conexão à sala (criando-a se preciso). Retorna false se já era membro.
+    boolean join(String room, ChatServer.Connection client) {
+        boolean[] added = new boolean[1];
+        rooms.compute(room, (name, members) -> {
+            if (members == null) members = EMPTY;
+            if (indexOf(members, client) >= 0) return members;
+            added[0] = true;
+            ChatServer.Connection[] updated = Arrays.copyOf(members, members.length + 1);
+            updated[members.length] = client;
+            return updated;
+        });
+        if (added[0]) {
+            memberships.computeIfAbsent(client, c -> ConcurrentHashMap.newKeySet()).add(room);
+        }
+        return added[0];
+    }
+
+    // Remove a conexão da sala. Retorna false se ela não era membro.
+    boolean leave(String room, ChatServer.Connection client) {
+        boolean[] removed = new boolean[1];
+        rooms.computeIfPresent(room, (name, members) -> {
+            int i = indexOf(members, client);
+            if (i < 0) return members;
+            removed[0] = true;
+            if (members.length == 1) return null; // Último membro: remove a sala
+            ChatServer.Connection[] updated = new ChatServer.Connection[members.length - 1];
+            System.arraycopy(members, 0, updated, 0, i);
+            System.arraycopy(members, i + 1, updated, i, members.length - i - 1);
+            return updated;
+        });
+        if (removed[0]) {
+            Set<String> joined = memberships.get(client);
+            if (joined != null) joined.remove(room);
+        }
+        return removed[0];
+    }
+
+    // Remove a conexão de todas as salas (desconexão) e retorna as salas em que ela estava
+    Set<String> leaveAll(ChatServer.Connection client) {
+        Set<String> joined = memberships.remove(client);
+        if (joined == null) return Collections.emptySet();
+        for (String room : joined) {
+            leave(room, client);
+        }
+        return joined;
+    }
+
+    // Snapshot dos membros da sala (vazio se ela não existe); pode ser percorrido sem lock
+    ChatServer.Connection[] members(String room) {
+        ChatServer.Connection[] members = rooms.get(room);
+        return members != null ? members : EMPTY;
+    }
+
+    // Consulta O(1) no conjunto de salas da conexão, em vez de percorrer os membros da sala
+    boolean isMember(String room, ChatServer.Connection client) {
+        return roomsOf(client).contains(room);
+    }
+
+    // Salas em que a conexão está (visão ao vivo, segura para leitura concorrente)
+    Set<String> roomsOf(ChatServer.Connection client) {
+        Set<String> joined = memberships.get(client);
+        return joined != null ? joined : Collections.emptySet();
+    }
+
+    private static int indexOf(ChatServer.Connection[] members, ChatServer.Connection client) {
+        for (int i = 0; i < members.length; i++) {
+            if (members[i] == client) return i;
+        }
+        return -1;
+    }
+}
@@ -18,8 +18,8 @@ public class chatClientGUI extends JFrame {
     // Variáveis de instância para o cliente
     private String username; // Nome do usuário no chat
     private Socket socket; // Socket para comunicação com o servidor
-    private ObjectOutputStream out; // Stream para enviar objetos (mensagens) ao servidor
-    private ObjectInputStream in; // Stream para receber objetos (mensagens) do servidor
+    private DataOutputStream out; // Stream para enviar quadros (mensagens codificadas pelo MensagemCodec) ao servidor
+    private DataInputStream in; // Stream para receber quadros (mensagens) do servidor
 
     // Componentes da Interface Gráfica (GUI)
     private JTextArea messagesArea; // Área de texto para exibir as mensagens do chat
@@ -97,8 +97,14 @@ public class chatClientGUI extends JFrame {
         appendMessageLocal("=== Chat TCP ===");
         appendMessageLocal("Comandos disponíveis:");
         appendMessageLocal("/privado <destinatario> <mensagem> - Enviar mensagem privada");
-        appendMessageLocal("/usuarios - Listar usuários conectados");
-        appendMessageLocal("Digite uma mensagem e pressione Enter para enviar");
+        appendMessageLocal("/usuarios - Listar usuários das suas salas (/usuarios:sala para uma sala)");
+        appendMessageLocal("/entrar:sala - Entrar em uma sala (ela passa a ser a sala atual)");
+        appendMessageLocal("/sair:sala - Sair de uma sala");
+        appendMessageLocal("/historico:sala:N - Últimas N mensagens da sala (ou /historico:sala:2024-05-01T10:00)");
+        appendMessageLocal("/nos - Nós do cluster e usuários de cada um");
+        appendMessageLocal("/stats - Estatísticas do servidor (taxas, filas e latências)");
+        appendMessageLocal("/sala:nome:mensagem - Enviar mensagem para uma sala específica");
+        appendMessageLocal("Digite uma mensagem e pressione Enter para enviar à sala atual (#geral ao conectar)");
         appendMessageLocal("");
     }
 
@@ -123,12 +129,12 @@ public class chatClientGUI extends JFrame {
 
             // Estabelece a conexão com o servidor
             socket = new Socket(SERVER_IP, SERVER_PORT); // Cria o socket
-            // Cria os streams de entrada e saída de objetos para comunicação serializada
-            out = new ObjectOutputStream(socket.getOutputStream());
-            in = new ObjectInputStream(socket.getInputStream());
+            // Cria os streams de entrada e saída; cada mensagem vai em um quadro com o tamanho na frente
+            out = new DataOutputStream(socket.getOutputStream());
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
 
             // Envia a primeira mensagem ao servidor (mensagem de login com o nome de usuário)
-            out.writeObject(new Mensagem(username, null, ""));
+            MensagemCodec.write(out, new Mensagem(username, null, ""));
 
             // Inicia uma nova thread para receber mensagens do servidor continuamente
             new Thread(new MessageReceiver()).start();
@@ -165,6 +171,10 @@ public class chatClientGUI extends JFrame {
         if (messageText.isEmpty()) { // Se a mensagem estiver vazia, não faz nada
             return;
         }
+        if (!MensagemCodec.fits(new Mensagem(username, null, messageText))) { // O servidor recusaria o quadro
+            appendMessageLocal("[CLIENTE] Mensagem grande demais (máximo de " + MensagemCodec.MAX_FRAME / 1024 + " KB). Não foi enviada.");
+            return;
+        }
 
         try {
             Mensagem msgToSend; // Objeto Mensagem a ser enviado
@@ -188,22 +198,32 @@ public class chatClientGUI extends JFrame {
                 // Exibe a mensagem privada na tela do remetente
                 appendMessageLocal("Você para " + recipientName + " (privado): " + privateContent);
 
-            } else if (messageText.equals("/usuarios")) { // Verifica se é o comando para listar usuários
-                msgToSend = new Mensagem(username, null, "/usuarios"); // Cria mensagem de comando
-                // Não precisa de append local, o servidor enviará a lista como resposta
+            } else if (messageText.startsWith("/sala:")) { // Mensagem para uma sala específica
+                msgToSend = new Mensagem(username, null, messageText);
+                String[] parts = messageText.split(":", 3);
+                if (parts.length == 3) {
+                    appendMessageLocal("Você em #" + parts[1].trim() + ": " + parts[2].trim()); // Exibe na tela do remetente
+                }
+            } else if (messageText.startsWith("/usuarios") || messageText.startsWith("/entrar:") || messageText.startsWith("/sair:")
+                    || messageText.startsWith("/historico") || messageText.equals("/nos")
+                    || messageText.equals("/stats")) {
+                msgToSend = new Mensagem(username, null, messageText); // Comando: o servidor responde com uma mensagem de sistema
+                // Não precisa de append local
             } else {
                 // Se não for comando, é uma mensagem pública (broadcast)
                 msgToSend = new Mensagem(username, null, messageText); // Destinatário null indica broadcast
                 appendMessageLocal("Você: " + messageText); // Exibe a mensagem na tela do remetente
             }
 
-            out.writeObject(msgToSend); // Envia o objeto Mensagem para o servidor
+            MensagemCodec.write(out, msgToSend); // Envia a Mensagem para o servidor
             messageField.setText(""); // Limpa o campo de mensagem após o envio
 
         } catch (IOException e) { // Captura exceção se houver erro ao enviar
             appendMessageLocal("[CLIENTE] Erro ao enviar mensagem: " + e.getMessage());
             statusLabel.setText("Erro de comunicação");
             statusLabel.setBackground(new Color(255, 102, 102)); // Vermelho claro
+        } catch (IllegalArgumentException e) { // Mensagem privada que, com o destinatário, não coube no quadro
+            appendMessageLocal("[CLIENTE] Mensagem não enviada: " + e.getMessage());
         }
     }
 
@@ -234,7 +254,7 @@ public class chatClientGUI extends JFrame {
             appendMessageLocal("Desconectando..."); // Mensagem local
             if (out != null) {
                  // Opcional: Enviar uma mensagem de desconexão ao servidor se o protocolo suportar
-                 // out.writeObject(new Mensagem(username, null, "/desconectar"));
+                 // MensagemCodec.write(out, new Mensagem(username, null, "/desconectar"));
             }
             if (socket != null && !socket.isClosed()) {
                 socket.close(); // Fecha o socket, o que também interrompe os streams e a thread MessageReceiver
@@ -265,7 +285,7 @@ public class chatClientGUI extends JFrame {
                 // Loop para ler mensagens enquanto o socket estiver conectado e o stream de entrada existir
                 while (socket != null && !socket.isClosed() && in != null) {
                     // Lê um objeto Mensagem do stream de entrada (bloqueia até receber algo)
-                    Mensagem msgFromServer = (Mensagem) in.readObject();
+                    Mensagem msgFromServer = MensagemCodec.read(in);
 
                     // Lógica para não reexibir mensagens de broadcast que este cliente mesmo enviou,
                     // pois já foram adicionadas localmente pelo método sendMessage().
@@ -275,8 +295,13 @@ public class chatClientGUI extends JFrame {
 
                     String displayMessage; // String formatada para exibição
                     // Verifica o tipo de mensagem recebida
+                    String recipient = msgFromServer.getDestinatario();
+                    boolean roomMessage = recipient != null && recipient.startsWith("#"); // Destinatário "#sala": mensagem de sala
                     if (msgFromServer.getRemetente().equals("Servidor")) { // Mensagem do sistema
-                        displayMessage = "[SISTEMA] " + msgFromServer.getConteudo();
+                        displayMessage = "[SISTEMA] " + (roomMessage ? "[" + recipient + "] " : "") + msgFromServer.getConteudo();
+                    } else if (roomMessage) {
+                        // Mensagem de OUTRO usuário para uma sala da qual este cliente é membro
+                        displayMessage = "[" + recipient + "] " + msgFromServer.getRemetente() + ": " + msgFromServer.getConteudo();
                     } else if (msgFromServer.getDestinatario() != null && msgFromServer.getDestinatario().equals(username)) {
                         // Mensagem privada PARA ESTE CLIENTE vinda de outro usuário
                         // O servidor já tratou e limpou o conteúdo.
@@ -300,7 +325,7 @@ public class chatClientGUI extends JFrame {
                 } else {
                     appendMessageFromServer("[CLIENTE] Erro de conexão (SocketException): " + e.getMessage());
                 }
-            } catch (IOException | ClassNotFoundException e) { // Outras exceções de I/O ou se a classe Mensagem não for encontrada
+            } catch (IOException e) { // Outras exceções de I/O ou quadros inválidos
                 appendMessageFromServer("[CLIENTE] Conexão com o servidor perdida ou erro de dados: " + e.getMessage());
             } catch (Exception e) { // Captura genérica para outros erros inesperados na thread
                 appendMessageFromServer("[CLIENTE] Erro inesperado no recebimento: " + e.getClass().getSimpleName() + " - " + e.getMessage());
@@ -2,15 +2,23 @@ package exerciciosTCP;
 import java.net.*;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadFactory;
+import chatTcp.ChatServer;
 
+// Uso: java exerciciosTCP.TCPServer [--threads=virtuais]
+// Com --threads=virtuais cada ClientHandler roda numa thread virtual (JDK 21+); senão, numa thread de plataforma.
+// A fábrica das threads é a do chatTcp.ChatServer, que já cuida do JDK 17 (sem threads virtuais).
 public class TCPServer {
     public static void main(String[] args) {
+        boolean virtual = args.length > 0 && args[0].equals("--threads=virtuais");
+        ThreadFactory handlerThreads = ChatServer.handlerThreads(virtual); // Mesma fábrica do servidor de chat
+
         try (ServerSocket serverSocket = new ServerSocket(12345)) {
             System.out.println("Servidor TCP iniciado na porta 12345");
             
             while (true) {
                 Socket clientSocket = serverSocket.accept();
-                new ClientHandler(clientSocket).start();
+                handlerThreads.newThread(new ClientHandler(clientSocket)).start();
             }
         } catch (IOException e) {
             e.printStackTrace();
@@ -18,7 +26,7 @@ public class TCPServer {
     }
 }
 
-class ClientHandler extends Thread {
+class ClientHandler implements Runnable {
     private final Socket clientSocket;
 
     public ClientHandler(Socket socket) {
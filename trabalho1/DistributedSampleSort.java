@@ -0,0 +1,251 @@
+package trabalho1;
+import java.io.*;
+import java.net.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+// Coordenador da ordenação distribuída por amostragem (sample sort) entre JVMs trabalhadoras (SortWorker):
+// 1. amostragem: sorteia ~OVERSAMPLING chaves por trabalhador e escolhe k-1 separadores (splitters);
+// 2. particionamento: distribui as chaves em k faixas de valores (contagem + soma de prefixos);
+// 3. shuffle: envia cada partição a um trabalhador por TCP (em paralelo, uma thread por trabalhador);
+// 4. ordenação local: cada trabalhador ordena com o ParallelMergeSort e informa o tempo gasto;
+// 5. gather: recebe as partições ordenadas direto na posição final, então a concatenação é gratuita.
+//
+// Uso: java trabalho1.DistributedSampleSort <elementos> host:porta [host:porta ...]
+//      java trabalho1.DistributedSampleSort <elementos> --locais=<k> [--porta-base=13000]
+// Com --locais o coordenador sobe k processos SortWorker nesta máquina e os encerra no final.
+public class DistributedSampleSort {
+    private static final int OVERSAMPLING = 64;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            printUsage();
+            return;
+        }
+        int size = (int) Double.parseDouble(args[0]);
+        List<InetSocketAddress> workers = new ArrayList<>();
+        int localWorkers = 0;
+        int basePort = 13000;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].startsWith("--locais=")) {
+                localWorkers = Integer.parseInt(args[i].substring("--locais=".length()));
+            } else if (args[i].startsWith("--porta-base=")) {
+                basePort = Integer.parseInt(args[i].substring("--porta-base=".length()));
+            } else {
+                String[] hostPort = args[i].split(":");
+                workers.add(new InetSocketAddress(hostPort[0], Integer.parseInt(hostPort[1])));
+            }
+        }
+        if (localWorkers < 0 || workers.size() + localWorkers < 1) { // Precisa de ao menos um trabalhador
+            printUsage();
+            return;
+        }
+
+        List<Process> processes = new ArrayList<>();
+        try {
+            for (int w = 0; w < localWorkers; w++) {
+                processes.add(startLocalWorker(basePort + w));
+                workers.add(new InetSocketAddress("localhost", basePort + w));
+            }
+            for (InetSocketAddress worker : workers) {
+                waitUntilListening(worker);
+            }
+
+            Random rand = new Random();
+            int[] array = new int[size];
+            for (int i = 0; i < size; i++) {
+                array[i] = rand.nextInt();
+            }
+
+            int[] sorted = new DistributedSampleSort().sort(array, workers);
+            System.out.println("Ordenação correta: " + isSorted(sorted) + " (" + sorted.length + " elementos)");
+        } finally {
+            for (Process process : processes) {
+                process.destroy();
+            }
+        }
+    }
+
+    private static void printUsage() {
+        System.out.println("Uso: java trabalho1.DistributedSampleSort <elementos> host:porta [host:porta ...]");
+        System.out.println("     java trabalho1.DistributedSampleSort <elementos> --locais=<k> [--porta-base=13000]");
+    }
+
+    // tempos da última ordenação, em ms
+    private double samplingTime, partitionTime, shuffleTime, localSortTime, gatherTime, totalTime;
+
+    public int[] sort(int[] array, List<InetSocketAddress> workers) throws IOException, InterruptedException {
+        int k = workers.size();
+        if (k < 1) {
+            throw new IllegalArgumentException("É preciso ao menos um trabalhador");
+        }
+        long begin = System.nanoTime();
+
+        // 1. amostragem
+        int[] splitters = chooseSplitters(array, k);
+        long sampled = System.nanoTime();
+
+        // 2. particionamento: partitioned[offsets[p] .. offsets[p + 1] - 1] é a partição p
+        int[] offsets = new int[k + 1];
+        int[] partitioned = partition(array, splitters, offsets);
+        long partitionedAt = System.nanoTime();
+
+        // 3-5. uma thread por trabalhador: envia, espera a ordenação local e recebe o resultado
+        int[] result = new int[array.length];
+        Transfer[] transfers = new Transfer[k];
+        for (int p = 0; p < k; p++) {
+            transfers[p] = new Transfer(workers.get(p), partitioned, offsets[p], offsets[p + 1] - offsets[p], result);
+            transfers[p].start();
+        }
+        for (Transfer transfer : transfers) {
+            transfer.join();
+            if (transfer.error != null) {
+                throw new IOException("Falha no trabalhador " + transfer.worker + ": " + transfer.error.getMessage(), transfer.error);
+            }
+        }
+        long end = System.nanoTime();
+
+        samplingTime = (sampled - begin) / 1e6;
+        partitionTime = (partitionedAt - sampled) / 1e6;
+        shuffleTime = localSortTime = gatherTime = 0;
+        for (Transfer transfer : transfers) {
+            shuffleTime = Math.max(shuffleTime, transfer.sendNanos / 1e6);
+            localSortTime = Math.max(localSortTime, transfer.sortNanos / 1e6);
+            gatherTime = Math.max(gatherTime, transfer.receiveNanos / 1e6);
+        }
+        totalTime = (end - begin) / 1e6;
+        printTimes(transfers, offsets);
+        return result;
+    }
+
+    private static int[] chooseSplitters(int[] array, int k) {
+        Random rand = new Random();
+        int[] sample = new int[Math.min(array.length, k * OVERSAMPLING)];
+        for (int i = 0; i < sample.length; i++) {
+            sample[i] = array[rand.nextInt(array.length)];
+        }
+        Arrays.sort(sample);
+        int[] splitters = new int[k - 1];
+        for (int s = 1; s < k; s++) {
+            splitters[s - 1] = sample.length == 0 ? 0 : sample[(int) ((long) s * sample.length / k)];
+        }
+        return splitters;
+    }
+
+    // Partição p recebe as chaves com splitters[p-1] <= chave < splitters[p]
+    private static int[] partition(int[] array, int[] splitters, int[] offsets) {
+        int k = splitters.length + 1;
+        int[] bucketOf = new int[array.length];
+        for (int i = 0; i < array.length; i++) {
+            int bucket = upperBound(splitters, array[i]);
+            bucketOf[i] = bucket;
+            offsets[bucket + 1]++;
+        }
+        for (int p = 0; p < k; p++) {
+            offsets[p + 1] += offsets[p];
+        }
+        int[] next = Arrays.copyOf(offsets, k);
+        int[] partitioned = new int[array.length];
+        for (int i = 0; i < array.length; i++) {
+            partitioned[next[bucketOf[i]]++] = array[i];
+        }
+        return partitioned;
+    }
+
+    // número de separadores <= key
+    private static int upperBound(int[] splitters, int key) {
+        int l = 0, h = splitters.length;
+        while (l < h) {
+            int m = (l + h) >>> 1;
+            if (splitters[m] <= key) l = m + 1; else h = m;
+        }
+        return l;
+    }
+
+    private void printTimes(Transfer[] transfers, int[] offsets) {
+        System.out.printf("Amostragem:      %10.1f ms%n", samplingTime);
+        System.out.printf("Particionamento: %10.1f ms%n", partitionTime);
+        System.out.printf("Shuffle (envio): %10.1f ms%n", shuffleTime);
+        System.out.printf("Ordenação local: %10.1f ms%n", localSortTime);
+        System.out.printf("Gather:          %10.1f ms%n", gatherTime);
+        System.out.printf("Total:           %10.1f ms%n", totalTime);
+        for (int p = 0; p < transfers.length; p++) {
+            System.out.printf("  %s: %d elementos, envio %.1f ms, ordenação %.1f ms, retorno %.1f ms%n",
+                    transfers[p].worker, offsets[p + 1] - offsets[p],
+                    transfers[p].sendNanos / 1e6, transfers[p].sortNanos / 1e6, transfers[p].receiveNanos / 1e6);
+        }
+    }
+
+    // Envia uma partição a um trabalhador e recebe de volta, já ordenada, na mesma faixa de 'result'
+    private static class Transfer extends Thread {
+        private final InetSocketAddress worker;
+        private final int[] partitioned;
+        private final int from;
+        private final int count;
+        private final int[] result;
+        private long sendNanos, sortNanos, receiveNanos;
+        private IOException error;
+
+        Transfer(InetSocketAddress worker, int[] partitioned, int from, int count, int[] result) {
+            this.worker = worker;
+            this.partitioned = partitioned;
+            this.from = from;
+            this.count = count;
+            this.result = result;
+        }
+
+        @Override
+        public void run() {
+            try (Socket socket = new Socket(worker.getHostString(), worker.getPort());
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), IntStreams.BLOCK_BYTES));
+                 DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), IntStreams.BLOCK_BYTES))) {
+                socket.setTcpNoDelay(true);
+
+                long begin = System.nanoTime();
+                IntStreams.writeInts(out, partitioned, from, count);
+                out.flush();
+                sendNanos = System.nanoTime() - begin;
+
+                sortNanos = in.readLong(); // bloqueia até o trabalhador terminar de ordenar
+                long received = System.nanoTime();
+                int returned = in.readInt();
+                if (returned != count) {
+                    throw new IOException("Trabalhador devolveu " + returned + " elementos, esperado " + count);
+                }
+                IntStreams.readInts(in, result, from, count);
+                receiveNanos = System.nanoTime() - received;
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+    }
+
+    private static Process startLocalWorker(int port) throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                "trabalho1.SortWorker", String.valueOf(port))
+                .inheritIO()
+                .start();
+    }
+
+    private static void waitUntilListening(InetSocketAddress worker) throws InterruptedException, IOException {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            try (Socket probe = new Socket()) {
+                probe.connect(worker, 200);
+                return;
+            } catch (IOException e) {
+                Thread.sleep(100);
+            }
+        }
+        throw new IOException("Trabalhador não respondeu: " + worker);
+    }
+
+    private static boolean isSorted(int[] array) {
+        for (int i = 0; i < array.length - 1; i++) {
+            if (array[i] > array[i + 1]) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,255 @@
+package trabalho1;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+// Ordenação externa (fora da memória) de arquivos de inteiros de 32 bits (big-endian, sem cabeçalho).
+// 1. Lê a entrada em pedaços mapeados em memória (FileChannel.map) e ordena cada pedaço com o ParallelMergeSort.
+// 2. Grava cada pedaço ordenado (run) em um arquivo temporário.
+// 3. Intercala as runs com um heap (k-way merge), com leituras e escritas sequenciais em blocos grandes.
+// O uso de heap fica limitado por memoryBudget: pedaço + buffer do ParallelMergeSort na fase 1,
+// e os blocos de leitura/escrita (fora do heap) na fase 2.
+public class ExternalMergeSort {
+    private static final int MIN_BLOCK_BYTES = 64 * 1024; // bloco mínimo por run para manter a leitura sequencial
+    private static final int MAX_BLOCK_BYTES = 8 * 1024 * 1024;
+
+    private final long memoryBudget; // em bytes
+    private final ForkJoinPool pool;
+    private final Path tempDir;
+
+    // tempos da última ordenação, em ms
+    private long splitTime;
+    private long mergeTime;
+
+    public ExternalMergeSort(long memoryBudget, ForkJoinPool pool, Path tempDir) {
+        if (memoryBudget < 4L * MIN_BLOCK_BYTES) {
+            throw new IllegalArgumentException("Orçamento de memória muito pequeno: " + memoryBudget + " bytes");
+        }
+        this.memoryBudget = memoryBudget;
+        this.pool = pool;
+        this.tempDir = tempDir;
+    }
+
+    public long getSplitTime() { return splitTime; }
+    public long getMergeTime() { return mergeTime; }
+
+    public void sort(Path input, Path output) throws IOException {
+        List<Path> runs = new ArrayList<>();
+        List<Path> intermediate = new ArrayList<>(); // runs das passadas intermediárias do merge
+        try {
+            long begin = System.currentTimeMillis();
+            createSortedRuns(input, runs);
+            splitTime = System.currentTimeMillis() - begin;
+
+            begin = System.currentTimeMillis();
+            mergeRuns(runs, intermediate, output);
+            mergeTime = System.currentTimeMillis() - begin;
+        } finally {
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+            for (Path run : intermediate) {
+                Files.deleteIfExists(run);
+            }
+        }
+    }
+
+    // Fase 1: pedaços da entrada -> runs ordenadas em arquivos temporários
+    private void createSortedRuns(Path input, List<Path> runs) throws IOException {
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ)) {
+            long totalBytes = in.size();
+            if (totalBytes % Integer.BYTES != 0) {
+                throw new IOException("Tamanho do arquivo não é múltiplo de 4 bytes: " + input);
+            }
+
+            // metade do orçamento para o pedaço, metade para o buffer auxiliar do ParallelMergeSort
+            long chunkInts = Math.min(memoryBudget / (2L * Integer.BYTES), Integer.MAX_VALUE / Integer.BYTES);
+            chunkInts = Math.min(chunkInts, totalBytes / Integer.BYTES);
+            int[] chunk = new int[(int) chunkInts];
+            int[] buffer = new int[(int) chunkInts];
+
+            for (long offset = 0; offset < totalBytes; ) {
+                int n = (int) Math.min(chunkInts, (totalBytes - offset) / Integer.BYTES);
+                IntBuffer mapped = in.map(FileChannel.MapMode.READ_ONLY, offset, (long) n * Integer.BYTES).asIntBuffer();
+                mapped.get(chunk, 0, n);
+                pool.invoke(new ParallelMergeSort(chunk, buffer, 0, n - 1));
+
+                Path run = Files.createTempFile(tempDir, "run-", ".bin");
+                runs.add(run);
+                writeRun(run, chunk, n);
+                offset += (long) n * Integer.BYTES;
+            }
+        }
+    }
+
+    private void writeRun(Path run, int[] chunk, int n) throws IOException {
+        ByteBuffer block = ByteBuffer.allocateDirect(blockSize(1));
+        IntBuffer ints = block.asIntBuffer();
+        try (FileChannel out = FileChannel.open(run, StandardOpenOption.WRITE)) {
+            for (int i = 0; i < n; ) {
+                int count = Math.min(ints.capacity(), n - i);
+                ints.clear();
+                ints.put(chunk, i, count);
+                block.clear().limit(count * Integer.BYTES);
+                while (block.hasRemaining()) {
+                    out.write(block);
+                }
+                i += count;
+            }
+        }
+    }
+
+    // Fase 2: k-way merge. Se houver mais runs do que cabem no orçamento, intercala em várias passadas.
+    // Cada run intermediária entra em 'intermediate' assim que é criada, para ser apagada mesmo se uma passada falhar.
+    private void mergeRuns(List<Path> runs, List<Path> intermediate, Path output) throws IOException {
+        int fanIn = (int) Math.max(2, Math.min(Integer.MAX_VALUE, memoryBudget / MIN_BLOCK_BYTES - 1));
+
+        while (runs.size() > fanIn) {
+            List<Path> merged = new ArrayList<>();
+            for (int i = 0; i < runs.size(); i += fanIn) {
+                List<Path> group = runs.subList(i, Math.min(i + fanIn, runs.size()));
+                Path run = Files.createTempFile(tempDir, "run-", ".bin");
+                intermediate.add(run);
+                merged.add(run);
+                mergeGroup(group, run);
+                for (Path done : group) {
+                    Files.delete(done);
+                }
+            }
+            runs.clear();
+            runs.addAll(merged);
+        }
+        mergeGroup(runs, output);
+    }
+
+    private void mergeGroup(List<Path> group, Path output) throws IOException {
+        int k = group.size();
+        int blockSize = blockSize(k + 1); // k blocos de leitura + 1 de escrita
+        RunReader[] readers = new RunReader[k];
+        try (FileChannel out = FileChannel.open(output, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            // heap mínimo de índices de runs, ordenado pelo valor atual de cada run
+            int[] heap = new int[k];
+            int heapSize = 0;
+            for (int i = 0; i < k; i++) {
+                readers[i] = new RunReader(group.get(i), blockSize);
+                if (readers[i].advance()) {
+                    heap[heapSize++] = i;
+                }
+            }
+            for (int i = heapSize / 2 - 1; i >= 0; i--) {
+                siftDown(heap, heapSize, i, readers);
+            }
+
+            ByteBuffer block = ByteBuffer.allocateDirect(blockSize);
+            while (heapSize > 0) {
+                RunReader top = readers[heap[0]];
+                if (block.remaining() < Integer.BYTES) {
+                    flush(out, block);
+                }
+                block.putInt(top.current);
+                if (!top.advance()) {
+                    heap[0] = heap[--heapSize];
+                }
+                siftDown(heap, heapSize, 0, readers);
+            }
+            flush(out, block);
+        } finally {
+            for (RunReader reader : readers) {
+                if (reader != null) reader.close();
+            }
+        }
+    }
+
+    private static void siftDown(int[] heap, int heapSize, int i, RunReader[] readers) {
+        int node = heap[i];
+        int key = readers[node].current;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && readers[heap[child + 1]].current < readers[heap[child]].current) {
+                child++;
+            }
+            if (readers[heap[child]].current >= key) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = node;
+    }
+
+    private static void flush(FileChannel out, ByteBuffer block) throws IOException {
+        block.flip();
+        while (block.hasRemaining()) {
+            out.write(block);
+        }
+        block.clear();
+    }
+
+    // Divide o orçamento entre 'buffers' blocos, alinhados a 4 bytes e limitados a [MIN, MAX]
+    private int blockSize(int buffers) {
+        long size = memoryBudget / buffers;
+        size = Math.max(MIN_BLOCK_BYTES, Math.min(MAX_BLOCK_BYTES, size));
+        return (int) (size & ~(Integer.BYTES - 1));
+    }
+
+    // Lê uma run sequencialmente em blocos grandes, um inteiro por vez
+    private static class RunReader implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer block;
+        private int current;
+
+        RunReader(Path run, int blockSize) throws IOException {
+            this.channel = FileChannel.open(run, StandardOpenOption.READ);
+            this.block = ByteBuffer.allocateDirect(blockSize);
+            this.block.flip(); // começa vazio
+        }
+
+        boolean advance() throws IOException {
+            if (block.remaining() < Integer.BYTES) {
+                block.compact();
+                while (block.position() < Integer.BYTES) {
+                    if (channel.read(block) < 0) break;
+                }
+                block.flip();
+                if (block.remaining() < Integer.BYTES) return false;
+            }
+            current = block.getInt();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    // Uso: java trabalho1.ExternalMergeSort <entrada> <saida> [memoriaMB]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Uso: java trabalho1.ExternalMergeSort <entrada> <saida> [memoriaMB]");
+            return;
+        }
+        Path input = Paths.get(args[0]);
+        Path output = Paths.get(args[1]);
+        long memoryBudget = (args.length > 2 ? Long.parseLong(args[2]) : 256) * 1024 * 1024;
+        Path tempDir = output.toAbsolutePath().getParent();
+
+        ExternalMergeSort sorter = new ExternalMergeSort(memoryBudget, new ForkJoinPool(), tempDir);
+        sorter.sort(input, output);
+
+        double megabytes = Files.size(input) / (1024.0 * 1024.0);
+        long total = sorter.getSplitTime() + sorter.getMergeTime();
+        System.out.println("Fase 1 (runs ordenadas): " + sorter.getSplitTime() + " ms");
+        System.out.println("Fase 2 (k-way merge):    " + sorter.getMergeTime() + " ms");
+        System.out.printf("Vazão: %.1f MB/s%n", megabytes * 1000.0 / Math.max(1, total));
+    }
+}
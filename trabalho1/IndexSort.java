@@ -0,0 +1,254 @@
+package trabalho1;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Ordenação por índice: ordena uma coluna de chaves primitivas (int[], long[] ou double[]) junto com
+// uma permutação int[], sem boxing nem Comparator. Depois, qualquer outra coluna (ou array de objetos)
+// é reordenada com uma única passada de gather(coluna, permutacao).
+//
+//     long[] horarios = ...;                         // ex.: horário de cada Mensagem em epoch-millis
+//     int[] perm = IndexSort.sort(pool, horarios);   // horarios fica ordenado
+//     Mensagem[] ordenadas = IndexSort.gather(mensagens, perm);
+//
+// A ordenação é estável e usa a mesma estrutura do ParallelMergeSort (buffer único em ping-pong,
+// recursão com invokeAll e merge paralelo por co-ranking). Internamente as chaves viram long:
+// int é estendido e double é mapeado para bits que preservam a ordem do Double.compare.
+public final class IndexSort {
+    private static final int INSERTION_SORT_THRESHOLD = 32;
+
+    private IndexSort() {}
+
+    // Ordena keys e retorna perm, com perm[i] = posição original do elemento que ficou em keys[i]
+    public static int[] sort(ForkJoinPool pool, long[] keys) {
+        int[] perm = identity(keys.length);
+        if (keys.length > 1) {
+            pool.invoke(new SortTask(keys, perm, keys.length));
+        }
+        return perm;
+    }
+
+    public static int[] sort(ForkJoinPool pool, int[] keys) {
+        long[] wide = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) wide[i] = keys[i];
+        int[] perm = sort(pool, wide);
+        for (int i = 0; i < keys.length; i++) keys[i] = (int) wide[i];
+        return perm;
+    }
+
+    public static int[] sort(ForkJoinPool pool, double[] keys) {
+        long[] bits = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) bits[i] = toSortable(keys[i]);
+        int[] perm = sort(pool, bits);
+        for (int i = 0; i < keys.length; i++) keys[i] = fromSortable(bits[i]);
+        return perm;
+    }
+
+    public static int[] gather(int[] column, int[] perm) {
+        int[] result = new int[perm.length];
+        for (int i = 0; i < perm.length; i++) result[i] = column[perm[i]];
+        return result;
+    }
+
+    public static long[] gather(long[] column, int[] perm) {
+        long[] result = new long[perm.length];
+        for (int i = 0; i < perm.length; i++) result[i] = column[perm[i]];
+        return result;
+    }
+
+    public static double[] gather(double[] column, int[] perm) {
+        double[] result = new double[perm.length];
+        for (int i = 0; i < perm.length; i++) result[i] = column[perm[i]];
+        return result;
+    }
+
+    public static <T> T[] gather(T[] column, int[] perm) {
+        T[] result = Arrays.copyOf(column, perm.length);
+        for (int i = 0; i < perm.length; i++) result[i] = column[perm[i]];
+        return result;
+    }
+
+    private static int[] identity(int length) {
+        int[] perm = new int[length];
+        for (int i = 0; i < length; i++) perm[i] = i;
+        return perm;
+    }
+
+    // Negativos: inverte todos os bits; positivos: só o de sinal. Assim a ordem dos long com sinal
+    // é a mesma do Double.compare (-0.0 antes de 0.0, NaN no fim).
+    private static long toSortable(double value) {
+        long bits = Double.doubleToLongBits(value);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    private static double fromSortable(long sortable) {
+        return Double.longBitsToDouble(sortable ^ ((sortable >> 63) & Long.MAX_VALUE));
+    }
+
+    // Ordena (keys, perm)[start..end] nos arrays de destino; os de origem têm o mesmo conteúdo na entrada
+    private static class SortTask extends RecursiveAction {
+        private final long[] keys, keyBuffer;
+        private final int[] perm, permBuffer;
+        private final int start, end;
+        private final boolean root;
+        private int threshold;
+
+        SortTask(long[] keys, int[] perm, int length) {
+            this(keys, new long[length], perm, new int[length], 0, length - 1, true, 0);
+        }
+
+        private SortTask(long[] keys, long[] keyBuffer, int[] perm, int[] permBuffer,
+                         int start, int end, boolean root, int threshold) {
+            this.keys = keys;
+            this.keyBuffer = keyBuffer;
+            this.perm = perm;
+            this.permBuffer = permBuffer;
+            this.start = start;
+            this.end = end;
+            this.root = root;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (root) {
+                System.arraycopy(keys, start, keyBuffer, start, end - start + 1);
+                System.arraycopy(perm, start, permBuffer, start, end - start + 1);
+                ForkJoinPool pool = getPool();
+                int parallelism = pool != null ? pool.getParallelism() : ForkJoinPool.getCommonPoolParallelism();
+                threshold = ParallelMergeSort.computeThreshold(end - start + 1, parallelism);
+            }
+
+            if (end - start < threshold) {
+                sequentialSort(keyBuffer, permBuffer, keys, perm, start, end);
+                return;
+            }
+
+            int mid = (start + end) >>> 1;
+            invokeAll(new SortTask(keyBuffer, keys, permBuffer, perm, start, mid, false, threshold),
+                      new SortTask(keyBuffer, keys, permBuffer, perm, mid + 1, end, false, threshold));
+            new MergeTask(keyBuffer, permBuffer, start, mid, mid + 1, end, keys, perm, start, threshold).invoke();
+        }
+    }
+
+    private static void sequentialSort(long[] srcKeys, int[] srcPerm, long[] dstKeys, int[] dstPerm, int start, int end) {
+        if (end - start < INSERTION_SORT_THRESHOLD) {
+            insertionSort(dstKeys, dstPerm, start, end);
+            return;
+        }
+
+        int mid = (start + end) >>> 1;
+        sequentialSort(dstKeys, dstPerm, srcKeys, srcPerm, start, mid);
+        sequentialSort(dstKeys, dstPerm, srcKeys, srcPerm, mid + 1, end);
+        merge(srcKeys, srcPerm, start, mid, mid + 1, end, dstKeys, dstPerm, start);
+    }
+
+    private static void merge(long[] srcKeys, int[] srcPerm, int lo1, int hi1, int lo2, int hi2,
+                              long[] dstKeys, int[] dstPerm, int k) {
+        int i = lo1, j = lo2;
+        while (i <= hi1 && j <= hi2) {
+            if (srcKeys[i] <= srcKeys[j]) {
+                dstKeys[k] = srcKeys[i];
+                dstPerm[k++] = srcPerm[i++];
+            } else {
+                dstKeys[k] = srcKeys[j];
+                dstPerm[k++] = srcPerm[j++];
+            }
+        }
+        System.arraycopy(srcKeys, i, dstKeys, k, hi1 - i + 1);
+        System.arraycopy(srcPerm, i, dstPerm, k, hi1 - i + 1);
+        k += hi1 - i + 1;
+        System.arraycopy(srcKeys, j, dstKeys, k, hi2 - j + 1);
+        System.arraycopy(srcPerm, j, dstPerm, k, hi2 - j + 1);
+    }
+
+    private static void insertionSort(long[] keys, int[] perm, int start, int end) {
+        for (int i = start + 1; i <= end; i++) {
+            long key = keys[i];
+            int index = perm[i];
+            int j = i - 1;
+            while (j >= start && keys[j] > key) {
+                keys[j + 1] = keys[j];
+                perm[j + 1] = perm[j];
+                j--;
+            }
+            keys[j + 1] = key;
+            perm[j + 1] = index;
+        }
+    }
+
+    // Merge paralelo por co-ranking, como o ParallelMergeSort.ParallelMerge, movendo chave e índice juntos
+    private static class MergeTask extends RecursiveAction {
+        private final long[] srcKeys;
+        private final int[] srcPerm;
+        private final int lo1, hi1, lo2, hi2;
+        private final long[] dstKeys;
+        private final int[] dstPerm;
+        private final int k;
+        private final int threshold;
+
+        MergeTask(long[] srcKeys, int[] srcPerm, int lo1, int hi1, int lo2, int hi2,
+                  long[] dstKeys, int[] dstPerm, int k, int threshold) {
+            this.srcKeys = srcKeys;
+            this.srcPerm = srcPerm;
+            this.lo1 = lo1;
+            this.hi1 = hi1;
+            this.lo2 = lo2;
+            this.hi2 = hi2;
+            this.dstKeys = dstKeys;
+            this.dstPerm = dstPerm;
+            this.k = k;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            int n1 = hi1 - lo1 + 1;
+            int n2 = hi2 - lo2 + 1;
+            if (n1 + n2 <= threshold) {
+                merge(srcKeys, srcPerm, lo1, hi1, lo2, hi2, dstKeys, dstPerm, k);
+                return;
+            }
+
+            int m1, m2, pivot;
+            if (n1 >= n2) {
+                m1 = (lo1 + hi1) >>> 1;
+                m2 = lowerBound(srcKeys, lo2, hi2, srcKeys[m1]); // iguais da direita ficam depois do pivô
+                pivot = m1;
+            } else {
+                m2 = (lo2 + hi2) >>> 1;
+                m1 = upperBound(srcKeys, lo1, hi1, srcKeys[m2]); // iguais da esquerda ficam antes do pivô
+                pivot = m2;
+            }
+            int pos = k + (m1 - lo1) + (m2 - lo2);
+            dstKeys[pos] = srcKeys[pivot];
+            dstPerm[pos] = srcPerm[pivot];
+
+            MergeTask leftTask = new MergeTask(srcKeys, srcPerm, lo1, m1 - 1, lo2, m2 - 1, dstKeys, dstPerm, k, threshold);
+            MergeTask rightTask = n1 >= n2
+                    ? new MergeTask(srcKeys, srcPerm, m1 + 1, hi1, m2, hi2, dstKeys, dstPerm, pos + 1, threshold)
+                    : new MergeTask(srcKeys, srcPerm, m1, hi1, m2 + 1, hi2, dstKeys, dstPerm, pos + 1, threshold);
+            invokeAll(leftTask, rightTask);
+        }
+
+        // primeiro índice em [lo..hi] com a[i] >= key (hi + 1 se não houver)
+        private static int lowerBound(long[] a, int lo, int hi, long key) {
+            int l = lo, h = hi + 1;
+            while (l < h) {
+                int m = (l + h) >>> 1;
+                if (a[m] < key) l = m + 1; else h = m;
+            }
+            return l;
+        }
+
+        // primeiro índice em [lo..hi] com a[i] > key (hi + 1 se não houver)
+        private static int upperBound(long[] a, int lo, int hi, long key) {
+            int l = lo, h = hi + 1;
+            while (l < h) {
+                int m = (l + h) >>> 1;
+                if (a[m] <= key) l = m + 1; else h = m;
+            }
+            return l;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package trabalho1;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+// Envio e recebimento de blocos de inteiros em streams binários: um int com a quantidade seguido dos
+// valores em big-endian. A conversão é feita em blocos (IntBuffer sobre um byte[]) em vez de
+// writeInt/readInt elemento por elemento.
+final class IntStreams {
+    static final int BLOCK_BYTES = 64 * 1024;
+
+    private IntStreams() {}
+
+    static void writeInts(DataOutputStream out, int[] array, int from, int count) throws IOException {
+        out.writeInt(count);
+        byte[] block = new byte[BLOCK_BYTES];
+        IntBuffer ints = ByteBuffer.wrap(block).asIntBuffer();
+        for (int i = from; i < from + count; ) {
+            int n = Math.min(ints.capacity(), from + count - i);
+            ints.clear();
+            ints.put(array, i, n);
+            out.write(block, 0, n * Integer.BYTES);
+            i += n;
+        }
+    }
+
+    static int[] readInts(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Quantidade inválida: " + count);
+        }
+        int[] array = new int[count];
+        readInts(in, array, 0, count);
+        return array;
+    }
+
+    // Lê exatamente count inteiros (sem o cabeçalho de quantidade) para array[from..]
+    static void readInts(DataInputStream in, int[] array, int from, int count) throws IOException {
+        byte[] block = new byte[BLOCK_BYTES];
+        IntBuffer ints = ByteBuffer.wrap(block).asIntBuffer();
+        for (int i = from; i < from + count; ) {
+            int n = Math.min(ints.capacity(), from + count - i);
+            in.readFully(block, 0, n * Integer.BYTES);
+            ints.clear();
+            ints.get(array, i, n);
+            i += n;
+        }
+    }
+}
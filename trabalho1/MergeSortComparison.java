@@ -1,12 +1,26 @@
-
+package trabalho1;
 import java.util.Arrays;
 import java.util.Random;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class MergeSortComparison {
     private static final int ARRAY_SIZE = 10_000_000;
 
     public static void main(String[] args) {
+        String algorithm = "merge";
+        for (String arg : args) {
+            if (arg.equals("--calibrar")) {
+                // mede o threshold do ParallelMergeSort nesta máquina antes dos testes
+                int tasksPerThread = ParallelMergeSort.calibrate(new ForkJoinPool());
+                System.out.println("[Debug] Calibração: " + tasksPerThread + " subtarefas por thread");
+            } else if (arg.startsWith("--algoritmo=")) {
+                // motor paralelo comparado com o sequencial: merge (padrão), radix ou natural
+                algorithm = arg.substring("--algoritmo=".length());
+            }
+        }
+        System.out.println("Algoritmo paralelo: " + algorithm);
+
         // ### TESTES DE VALIDAÇÃO ###
         int[] testArray = {5, 3, 8, 4, 2, 7, 1, 6, 9, 0};
         System.out.println("Array original de teste: " + Arrays.toString(testArray));
@@ -17,7 +31,7 @@ public class MergeSortComparison {
 
         int[] parTest = testArray.clone();
         ForkJoinPool pool = new ForkJoinPool();
-        pool.invoke(new ParallelMergeSort(parTest, 0, parTest.length - 1));
+        pool.invoke(createParallelSort(algorithm, parTest));
         System.out.println("Resultado paralelo:     " + Arrays.toString(parTest));
 
         System.out.println("\n--- Iniciando testes de desempenho ---");
@@ -30,7 +44,7 @@ public class MergeSortComparison {
         long sequentialTime = timeSequentialSort(arraySequential);
         System.out.println("\nTempo sequencial: " + sequentialTime + " ms");
 
-        long parallelTime = timeParallelSort(arrayParallel);
+        long parallelTime = timeParallelSort(algorithm, arrayParallel);
         System.out.println("Tempo paralelo:   " + parallelTime + " ms");
 
         double speedup = (double) sequentialTime / parallelTime;
@@ -57,11 +71,20 @@ public class MergeSortComparison {
         return System.currentTimeMillis() - start;
     }
 
-    private static long timeParallelSort(int[] array) {
+    static RecursiveAction createParallelSort(String algorithm, int[] array) {
+        switch (algorithm) {
+            case "merge": return new ParallelMergeSort(array, 0, array.length - 1);
+            case "radix": return new ParallelRadixSort(array, 0, array.length - 1);
+            case "natural": return new NaturalMergeSort(array, 0, array.length - 1);
+            default: throw new IllegalArgumentException("Algoritmo desconhecido: " + algorithm + " (use merge, radix ou natural)");
+        }
+    }
+
+    private static long timeParallelSort(String algorithm, int[] array) {
         ForkJoinPool pool = new ForkJoinPool();
         System.out.println("[Debug] Threads usadas no teste de desempenho: " + pool.getParallelism()); 
         long start = System.currentTimeMillis();
-        pool.invoke(new ParallelMergeSort(array, 0, array.length - 1));
+        pool.invoke(createParallelSort(algorithm, array));
         return System.currentTimeMillis() - start;
     }
 
@@ -0,0 +1,267 @@
+package trabalho1;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Merge sort adaptativo ("natural") para entradas parcialmente ordenadas.
+// 1. Detecta em paralelo as sequências já crescentes ou estritamente decrescentes (runs) e inverte
+//    as decrescentes; runs muito curtas são estendidas com insertion sort até MIN_RUN.
+// 2. Intercala as runs numa árvore balanceada pelo número de elementos (não pelo número de runs),
+//    com as subárvores em paralelo no ForkJoinPool e merges com galope (como no TimSort).
+// Entradas já ordenadas ou invertidas terminam em tempo quase linear.
+public class NaturalMergeSort extends RecursiveAction {
+    private static final int MIN_RUN = 32;
+    private static final int MIN_GALLOP = 7; // vitórias seguidas de um lado antes de começar a galopar
+    private static final int MIN_SEGMENT = 1 << 16; // tamanho mínimo de cada faixa na detecção paralela de runs
+
+    private int[] array;
+    private int[] buffer; // um único buffer auxiliar por ordenação, como no ParallelMergeSort
+    private int start;
+    private int end;
+
+    public NaturalMergeSort(int[] array, int start, int end) {
+        this(array, new int[array.length], start, end);
+    }
+
+    // Permite reaproveitar o mesmo buffer entre várias ordenações (buffer.length deve ser > end)
+    public NaturalMergeSort(int[] array, int[] buffer, int start, int end) {
+        this.array = array;
+        this.buffer = buffer;
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+        int length = end - start + 1;
+        if (length < 2) return;
+
+        ForkJoinPool pool = getPool();
+        int parallelism = pool != null ? pool.getParallelism() : ForkJoinPool.getCommonPoolParallelism();
+        int[] runs = findRuns(parallelism);
+        int runCount = runs.length - 1;
+        if (runCount == 1) return; // já estava ordenado (ou era uma única run invertida)
+
+        System.arraycopy(array, start, buffer, start, length);
+        int threshold = ParallelMergeSort.computeThreshold(length, parallelism);
+        new MergeRuns(buffer, array, runs, 0, runCount - 1, threshold).invoke();
+    }
+
+    // Retorna o início de cada run, seguido de end + 1
+    private int[] findRuns(int parallelism) {
+        int length = end - start + 1;
+        int segments = Math.max(1, Math.min(parallelism, length / MIN_SEGMENT));
+        int segmentSize = (length + segments - 1) / segments;
+        segments = (length + segmentSize - 1) / segmentSize;
+
+        RunScan[] tasks = new RunScan[segments];
+        for (int s = 0; s < segments; s++) {
+            int from = start + s * segmentSize;
+            tasks[s] = new RunScan(array, from, Math.min(end, from + segmentSize - 1));
+        }
+        invokeAll(tasks);
+
+        // junta as listas de cada faixa, unindo runs vizinhas que já estão em ordem entre si
+        // (ex.: uma run crescente cortada na fronteira entre duas faixas)
+        int total = 0;
+        for (RunScan task : tasks) total += task.count;
+        int[] runs = new int[total + 1];
+        int count = 0;
+        for (RunScan task : tasks) {
+            for (int i = 0; i < task.count; i++) {
+                int runStart = task.starts[i];
+                if (count > 0 && array[runStart - 1] <= array[runStart]) continue;
+                runs[count++] = runStart;
+            }
+        }
+        runs[count++] = end + 1;
+        return Arrays.copyOf(runs, count);
+    }
+
+    // Detecta as runs de uma faixa: inverte as decrescentes e estende as curtas até MIN_RUN
+    private static class RunScan extends RecursiveAction {
+        private final int[] array;
+        private final int from;
+        private final int to;
+        private int[] starts = new int[16];
+        private int count;
+
+        RunScan(int[] array, int from, int to) {
+            this.array = array;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            int i = from;
+            while (i <= to) {
+                int runEnd = i;
+                if (runEnd < to) {
+                    if (array[runEnd + 1] < array[runEnd]) {
+                        // estritamente decrescente, para que a inversão mantenha a estabilidade
+                        while (runEnd < to && array[runEnd + 1] < array[runEnd]) runEnd++;
+                        reverse(array, i, runEnd);
+                    } else {
+                        while (runEnd < to && array[runEnd + 1] >= array[runEnd]) runEnd++;
+                    }
+                }
+                if (runEnd - i + 1 < MIN_RUN) {
+                    int extendedEnd = Math.min(to, i + MIN_RUN - 1);
+                    insertionSort(array, i, runEnd + 1, extendedEnd);
+                    runEnd = extendedEnd;
+                }
+                if (count == starts.length) starts = Arrays.copyOf(starts, count * 2);
+                starts[count++] = i;
+                i = runEnd + 1;
+            }
+        }
+    }
+
+    // Ordena as runs[lo..hi] de src para dst; src e dst têm o mesmo conteúdo na entrada (ping-pong)
+    private static class MergeRuns extends RecursiveAction {
+        private final int[] src;
+        private final int[] dst;
+        private final int[] runs;
+        private final int lo;
+        private final int hi;
+        private final int threshold;
+
+        MergeRuns(int[] src, int[] dst, int[] runs, int lo, int hi, int threshold) {
+            this.src = src;
+            this.dst = dst;
+            this.runs = runs;
+            this.lo = lo;
+            this.hi = hi;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (lo == hi) return; // uma run já está ordenada nos dois arrays
+
+            int first = runs[lo];
+            int last = runs[hi + 1] - 1;
+            // divide na fronteira de run mais próxima do meio dos elementos (árvore balanceada por tamanho)
+            int middle = first + (last - first + 1) / 2;
+            int l = lo + 1, h = hi;
+            while (l < h) {
+                int m = (l + h) >>> 1;
+                if (runs[m] < middle) l = m + 1; else h = m;
+            }
+            int split = l;
+            if (split > lo + 1 && middle - runs[split - 1] < runs[split] - middle) split--;
+
+            // os filhos ordenam suas metades dentro de src, usando dst como rascunho
+            MergeRuns leftTask = new MergeRuns(dst, src, runs, lo, split - 1, threshold);
+            MergeRuns rightTask = new MergeRuns(dst, src, runs, split, hi, threshold);
+            if (last - first + 1 > threshold) {
+                invokeAll(leftTask, rightTask);
+                new ParallelMergeSort.ParallelMerge(src, first, runs[split] - 1, runs[split], last, dst, first,
+                        threshold, true).invoke();
+            } else {
+                leftTask.compute();
+                rightTask.compute();
+                gallopMerge(src, first, runs[split] - 1, runs[split], last, dst, first);
+            }
+        }
+    }
+
+    // Intercala src[lo1..hi1] e src[lo2..hi2] em dst a partir de k (estável). Quando um lado vence
+    // MIN_GALLOP vezes seguidas, busca exponencialmente quantos elementos dele vêm a seguir e copia
+    // o bloco inteiro com System.arraycopy.
+    static void gallopMerge(int[] src, int lo1, int hi1, int lo2, int hi2, int[] dst, int k) {
+        if (lo1 > hi1 || lo2 > hi2 || src[hi1] <= src[lo2]) { // já estão em ordem
+            System.arraycopy(src, lo1, dst, k, hi1 - lo1 + 1);
+            System.arraycopy(src, lo2, dst, k + hi1 - lo1 + 1, hi2 - lo2 + 1);
+            return;
+        }
+        if (src[hi2] < src[lo1]) { // a direita inteira vem antes da esquerda
+            System.arraycopy(src, lo2, dst, k, hi2 - lo2 + 1);
+            System.arraycopy(src, lo1, dst, k + hi2 - lo2 + 1, hi1 - lo1 + 1);
+            return;
+        }
+
+        int i = lo1, j = lo2;
+        int leftWins = 0, rightWins = 0;
+        while (i <= hi1 && j <= hi2) {
+            if (src[i] <= src[j]) {
+                dst[k++] = src[i++];
+                rightWins = 0;
+                if (++leftWins >= MIN_GALLOP && i <= hi1) {
+                    int n = gallopRight(src, i, hi1, src[j]) - i; // elementos da esquerda <= src[j]
+                    System.arraycopy(src, i, dst, k, n);
+                    i += n;
+                    k += n;
+                    leftWins = 0;
+                }
+            } else {
+                dst[k++] = src[j++];
+                leftWins = 0;
+                if (++rightWins >= MIN_GALLOP && j <= hi2) {
+                    int n = gallopLeft(src, j, hi2, src[i]) - j; // elementos da direita < src[i]
+                    System.arraycopy(src, j, dst, k, n);
+                    j += n;
+                    k += n;
+                    rightWins = 0;
+                }
+            }
+        }
+
+        if (i <= hi1) System.arraycopy(src, i, dst, k, hi1 - i + 1);
+        if (j <= hi2) System.arraycopy(src, j, dst, k, hi2 - j + 1);
+    }
+
+    // primeiro índice em [lo..hi] com a[i] > key (hi + 1 se não houver), por busca exponencial a partir de lo
+    private static int gallopRight(int[] a, int lo, int hi, int key) {
+        int offset = 1;
+        int last = lo - 1; // a[last] <= key (ou last fora da faixa)
+        while (lo + offset - 1 <= hi && a[lo + offset - 1] <= key) {
+            last = lo + offset - 1;
+            offset <<= 1;
+        }
+        int l = last + 1, h = Math.min(hi + 1, lo + offset - 1);
+        while (l < h) {
+            int m = (l + h) >>> 1;
+            if (a[m] <= key) l = m + 1; else h = m;
+        }
+        return l;
+    }
+
+    // primeiro índice em [lo..hi] com a[i] >= key (hi + 1 se não houver), por busca exponencial a partir de lo
+    private static int gallopLeft(int[] a, int lo, int hi, int key) {
+        int offset = 1;
+        int last = lo - 1; // a[last] < key (ou last fora da faixa)
+        while (lo + offset - 1 <= hi && a[lo + offset - 1] < key) {
+            last = lo + offset - 1;
+            offset <<= 1;
+        }
+        int l = last + 1, h = Math.min(hi + 1, lo + offset - 1);
+        while (l < h) {
+            int m = (l + h) >>> 1;
+            if (a[m] < key) l = m + 1; else h = m;
+        }
+        return l;
+    }
+
+    private static void reverse(int[] array, int from, int to) {
+        while (from < to) {
+            int temp = array[from];
+            array[from++] = array[to];
+            array[to--] = temp;
+        }
+    }
+
+    // array[from..sortedEnd-1] já está ordenado; insere array[sortedEnd..to] nele
+    private static void insertionSort(int[] array, int from, int sortedEnd, int to) {
+        for (int i = sortedEnd; i <= to; i++) {
+            int value = array[i];
+            int j = i - 1;
+            while (j >= from && array[j] > value) {
+                array[j + 1] = array[j];
+                j--;
+            }
+            array[j + 1] = value;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package trabalho1;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+// Array de int fora do heap, indexado por long (pode passar de 2^31 elementos).
+// Os dados ficam em blocos de ByteBuffer direto de até 2^28 ints (1 GB) cada, então o GC não
+// varre nem copia o conteúdo. A memória é limitada por -XX:MaxDirectMemorySize, não por -Xmx,
+// e é liberada quando o objeto é coletado.
+public class OffHeapIntArray {
+    private static final int CHUNK_SHIFT = 28;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final IntBuffer[] chunks;
+    private final long length;
+
+    public OffHeapIntArray(long length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("Tamanho negativo: " + length);
+        }
+        this.length = length;
+        int chunkCount = (int) ((length + CHUNK_SIZE - 1) >>> CHUNK_SHIFT);
+        this.chunks = new IntBuffer[chunkCount];
+        for (int c = 0; c < chunkCount; c++) {
+            int size = (int) Math.min(CHUNK_SIZE, length - ((long) c << CHUNK_SHIFT));
+            chunks[c] = ByteBuffer.allocateDirect(size * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+        }
+    }
+
+    public long length() { return length; }
+
+    public int get(long index) {
+        return chunks[(int) (index >>> CHUNK_SHIFT)].get((int) (index & CHUNK_MASK));
+    }
+
+    public void set(long index, int value) {
+        chunks[(int) (index >>> CHUNK_SHIFT)].put((int) (index & CHUNK_MASK), value);
+    }
+
+    // Copia count elementos de this[from..] para dst[to..] em blocos (sem passar pelo heap)
+    public void copyTo(long from, OffHeapIntArray dst, long to, long count) {
+        while (count > 0) {
+            int srcOffset = (int) (from & CHUNK_MASK);
+            int dstOffset = (int) (to & CHUNK_MASK);
+            int n = (int) Math.min(count, Math.min(CHUNK_SIZE - srcOffset, CHUNK_SIZE - dstOffset));
+
+            IntBuffer source = chunks[(int) (from >>> CHUNK_SHIFT)].duplicate();
+            source.position(srcOffset).limit(srcOffset + n);
+            IntBuffer target = dst.chunks[(int) (to >>> CHUNK_SHIFT)].duplicate();
+            target.position(dstOffset);
+            target.put(source);
+
+            from += n;
+            to += n;
+            count -= n;
+        }
+    }
+}
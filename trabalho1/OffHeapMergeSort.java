@@ -0,0 +1,196 @@
+package trabalho1;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Versão do ParallelMergeSort para OffHeapIntArray: índices long (sem o limite de ~2,1 bilhões
+// de elementos do int[]) e dados e buffer auxiliar fora do heap. Mesma estrutura: buffer único em
+// ping-pong, recursão com invokeAll, merge paralelo por co-ranking e insertion sort nas faixas pequenas.
+public class OffHeapMergeSort extends RecursiveAction {
+    private static final long MIN_THRESHOLD = 4096;
+    private static final int TASKS_PER_THREAD = 8;
+    private static final int INSERTION_SORT_THRESHOLD = 32;
+
+    private OffHeapIntArray array;
+    private OffHeapIntArray buffer;
+    private long start;
+    private long end;
+    private boolean root;
+    private long threshold;
+
+    public OffHeapMergeSort(OffHeapIntArray array, long start, long end) {
+        this(array, new OffHeapIntArray(array.length()), start, end);
+    }
+
+    // Permite reaproveitar o mesmo buffer entre várias ordenações (buffer.length() deve ser > end)
+    public OffHeapMergeSort(OffHeapIntArray array, OffHeapIntArray buffer, long start, long end) {
+        this(array, buffer, start, end, true, 0);
+    }
+
+    private OffHeapMergeSort(OffHeapIntArray array, OffHeapIntArray buffer, long start, long end, boolean root, long threshold) {
+        this.array = array;
+        this.buffer = buffer;
+        this.start = start;
+        this.end = end;
+        this.root = root;
+        this.threshold = threshold;
+    }
+
+    @Override
+    protected void compute() {
+        if (root) {
+            array.copyTo(start, buffer, start, end - start + 1);
+            ForkJoinPool pool = getPool();
+            int parallelism = pool != null ? pool.getParallelism() : ForkJoinPool.getCommonPoolParallelism();
+            threshold = Math.max(MIN_THRESHOLD, (end - start + 1) / ((long) parallelism * TASKS_PER_THREAD));
+        }
+
+        if (end - start < threshold) {
+            sequentialMergeSort(buffer, array, start, end);
+            return;
+        }
+
+        long mid = start + (end - start) / 2; // (start + end) / 2 estouraria perto do limite
+        OffHeapMergeSort leftTask = new OffHeapMergeSort(buffer, array, start, mid, false, threshold);
+        OffHeapMergeSort rightTask = new OffHeapMergeSort(buffer, array, mid + 1, end, false, threshold);
+
+        invokeAll(leftTask, rightTask);
+        new ParallelMerge(buffer, start, mid, mid + 1, end, array, start, threshold).invoke();
+    }
+
+    private static void merge(OffHeapIntArray src, long lo1, long hi1, long lo2, long hi2, OffHeapIntArray dst, long k) {
+        long i = lo1, j = lo2;
+        if (i <= hi1 && j <= hi2) {
+            int left = src.get(i), right = src.get(j);
+            while (true) {
+                if (left <= right) {
+                    dst.set(k++, left);
+                    if (++i > hi1) break;
+                    left = src.get(i);
+                } else {
+                    dst.set(k++, right);
+                    if (++j > hi2) break;
+                    right = src.get(j);
+                }
+            }
+        }
+
+        if (i <= hi1) src.copyTo(i, dst, k, hi1 - i + 1);
+        if (j <= hi2) src.copyTo(j, dst, k, hi2 - j + 1);
+    }
+
+    // Ordena a faixa em dst; src deve ter o mesmo conteúdo na entrada e é usado como rascunho
+    private static void sequentialMergeSort(OffHeapIntArray src, OffHeapIntArray dst, long start, long end) {
+        if (end - start < INSERTION_SORT_THRESHOLD) {
+            insertionSort(dst, start, end);
+            return;
+        }
+
+        long mid = start + (end - start) / 2;
+        sequentialMergeSort(dst, src, start, mid);
+        sequentialMergeSort(dst, src, mid + 1, end);
+        merge(src, start, mid, mid + 1, end, dst, start);
+    }
+
+    private static void insertionSort(OffHeapIntArray array, long start, long end) {
+        for (long i = start + 1; i <= end; i++) {
+            int value = array.get(i);
+            long j = i - 1;
+            while (j >= start && array.get(j) > value) {
+                array.set(j + 1, array.get(j));
+                j--;
+            }
+            array.set(j + 1, value);
+        }
+    }
+
+    // Mesmo merge paralelo por co-ranking do ParallelMergeSort, com índices long
+    private static class ParallelMerge extends RecursiveAction {
+        private final OffHeapIntArray src;
+        private final long lo1, hi1, lo2, hi2;
+        private final OffHeapIntArray dst;
+        private final long k;
+        private final long threshold;
+
+        ParallelMerge(OffHeapIntArray src, long lo1, long hi1, long lo2, long hi2, OffHeapIntArray dst, long k, long threshold) {
+            this.src = src;
+            this.lo1 = lo1;
+            this.hi1 = hi1;
+            this.lo2 = lo2;
+            this.hi2 = hi2;
+            this.dst = dst;
+            this.k = k;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            long n1 = hi1 - lo1 + 1;
+            long n2 = hi2 - lo2 + 1;
+            if (n1 + n2 <= threshold) {
+                merge(src, lo1, hi1, lo2, hi2, dst, k);
+                return;
+            }
+
+            long m1, m2, pos;
+            ParallelMerge leftTask, rightTask;
+            if (n1 >= n2) {
+                m1 = lo1 + (hi1 - lo1) / 2;
+                m2 = lowerBound(src, lo2, hi2, src.get(m1));
+                pos = k + (m1 - lo1) + (m2 - lo2);
+                dst.set(pos, src.get(m1));
+                leftTask = new ParallelMerge(src, lo1, m1 - 1, lo2, m2 - 1, dst, k, threshold);
+                rightTask = new ParallelMerge(src, m1 + 1, hi1, m2, hi2, dst, pos + 1, threshold);
+            } else {
+                m2 = lo2 + (hi2 - lo2) / 2;
+                m1 = upperBound(src, lo1, hi1, src.get(m2));
+                pos = k + (m1 - lo1) + (m2 - lo2);
+                dst.set(pos, src.get(m2));
+                leftTask = new ParallelMerge(src, lo1, m1 - 1, lo2, m2 - 1, dst, k, threshold);
+                rightTask = new ParallelMerge(src, m1, hi1, m2 + 1, hi2, dst, pos + 1, threshold);
+            }
+            invokeAll(leftTask, rightTask);
+        }
+
+        // primeiro índice em [lo..hi] com a[i] >= key (hi + 1 se não houver)
+        private static long lowerBound(OffHeapIntArray a, long lo, long hi, int key) {
+            long l = lo, h = hi + 1;
+            while (l < h) {
+                long m = (l + h) >>> 1;
+                if (a.get(m) < key) l = m + 1; else h = m;
+            }
+            return l;
+        }
+
+        // primeiro índice em [lo..hi] com a[i] > key (hi + 1 se não houver)
+        private static long upperBound(OffHeapIntArray a, long lo, long hi, int key) {
+            long l = lo, h = hi + 1;
+            while (l < h) {
+                long m = (l + h) >>> 1;
+                if (a.get(m) <= key) l = m + 1; else h = m;
+            }
+            return l;
+        }
+    }
+
+    // Uso: java -XX:MaxDirectMemorySize=<2 x 4 x elementos> trabalho1.OffHeapMergeSort [elementos]
+    public static void main(String[] args) {
+        long size = args.length > 0 ? (long) Double.parseDouble(args[0]) : 100_000_000L;
+        OffHeapIntArray array = new OffHeapIntArray(size);
+        Random rand = new Random();
+        for (long i = 0; i < size; i++) {
+            array.set(i, rand.nextInt());
+        }
+
+        ForkJoinPool pool = new ForkJoinPool();
+        long begin = System.currentTimeMillis();
+        pool.invoke(new OffHeapMergeSort(array, 0, size - 1));
+        System.out.println("Tempo off-heap (" + size + " elementos): " + (System.currentTimeMillis() - begin) + " ms");
+
+        boolean sorted = true;
+        for (long i = 0; i < size - 1 && sorted; i++) {
+            sorted = array.get(i) <= array.get(i + 1);
+        }
+        System.out.println("Ordenação correta: " + sorted);
+    }
+}
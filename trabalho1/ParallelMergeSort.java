@@ -1,61 +1,228 @@
 package trabalho1;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.RecursiveAction;
 
 public class ParallelMergeSort extends RecursiveAction {
+    // O resultado ordenado de cada tarefa vai para 'array'; 'buffer' tem o mesmo conteúdo na entrada
+    // e serve de rascunho. Os filhos trocam os papéis (ping-pong), então nenhum merge precisa copiar de volta.
     private int[] array;
+    private int[] buffer; // um único buffer auxiliar por ordenação, compartilhado por todas as subtarefas (faixas disjuntas)
     private int start;
     private int end;
-    // calculei threshold ideal para o meu computador que tem 12 threads
-    // 10000000 / 12 = 833333, arredondado para 850000
-    // private static final int THRESHOLD = 850_000; //  vAi gera 12 subtarefas para as threads
-    private static final int THRESHOLD = 10000; // vAi gerar 1000 subtarefas para as threads
-    // private static final int THRESHOLD = 1000; // vAi gerar 10_000 subtarefas para as threads
-    // private static final int THRESHOLD = 100; // vAi gerar 100_000 subtarefas para as threads
+    private boolean root; // só a tarefa raiz copia a faixa para o buffer antes de começar
+    private int threshold; // 0 = a raiz calcula a partir do tamanho da entrada e do paralelismo do pool
+
+    // Antes o threshold era fixo em 10000 (ajustado à mão para uma máquina de 12 threads).
+    // Agora cada ordenação gera ~tasksPerThread folhas por thread do pool, com um piso para
+    // que o custo de criar tarefas não passe o ganho.
+    private static final int MIN_THRESHOLD = 4096;
+    private static final int INSERTION_SORT_THRESHOLD = 32; // faixas pequenas: insertion sort, cabe no cache L1
+    private static volatile int tasksPerThread = 8; // pode ser ajustado por calibrate()
 
     public ParallelMergeSort(int[] array, int start, int end) {
+        this(array, new int[array.length], start, end);
+    }
+
+    // Permite reaproveitar o mesmo buffer entre várias ordenações (buffer.length deve ser > end)
+    public ParallelMergeSort(int[] array, int[] buffer, int start, int end) {
+        this(array, buffer, start, end, true, 0);
+    }
+
+    private ParallelMergeSort(int[] array, int[] buffer, int start, int end, boolean root, int threshold) {
         this.array = array;
+        this.buffer = buffer;
         this.start = start;
         this.end = end;
+        this.root = root;
+        this.threshold = threshold;
+    }
+
+    // Threshold com o valor de tasksPerThread atual (calibrado ou padrão); usado também pelo NaturalMergeSort
+    static int computeThreshold(int length, int parallelism) {
+        return computeThreshold(length, parallelism, tasksPerThread);
+    }
+
+    static int computeThreshold(int length, int parallelism, int tasksPerThread) {
+        long threshold = length / ((long) parallelism * tasksPerThread);
+        return (int) Math.max(MIN_THRESHOLD, threshold);
+    }
+
+    // Calibração opcional (ex.: na inicialização): mede algumas opções de folhas por thread
+    // neste pool e nesta máquina e fixa a mais rápida para as próximas ordenações.
+    public static int calibrate(ForkJoinPool pool) {
+        final int size = 1 << 21;
+        final int[] candidates = {2, 4, 8, 16, 32};
+        int[] original = new Random(42).ints(size).toArray();
+        int[] array = new int[size];
+        int[] buffer = new int[size];
+
+        int best = tasksPerThread;
+        long bestTime = Long.MAX_VALUE;
+        for (int round = 0; round < 3; round++) { // a primeira rodada serve de aquecimento do JIT
+            for (int candidate : candidates) {
+                System.arraycopy(original, 0, array, 0, size);
+                int threshold = computeThreshold(size, pool.getParallelism(), candidate);
+                long begin = System.nanoTime();
+                pool.invoke(new ParallelMergeSort(array, buffer, 0, size - 1, true, threshold));
+                long elapsed = System.nanoTime() - begin;
+                if (round > 0 && elapsed < bestTime) {
+                    bestTime = elapsed;
+                    best = candidate;
+                }
+            }
+        }
+        tasksPerThread = best;
+        return best;
     }
 
     @Override
     protected void compute() {
-        if (end - start < THRESHOLD) {
-            sequentialMergeSort(array, start, end); 
+        if (root) {
+            System.arraycopy(array, start, buffer, start, end - start + 1); // única cópia O(n) da ordenação
+            if (threshold == 0) {
+                ForkJoinPool pool = getPool();
+                int parallelism = pool != null ? pool.getParallelism() : ForkJoinPool.getCommonPoolParallelism();
+                threshold = computeThreshold(end - start + 1, parallelism);
+            }
+        }
+
+        if (end - start < threshold) {
+            sequentialMergeSort(buffer, array, start, end);
             return;
         }
 
-        int mid = (start + end) / 2;
-        ParallelMergeSort leftTask = new ParallelMergeSort(array, start, mid);
-        ParallelMergeSort rightTask = new ParallelMergeSort(array, mid + 1, end);
+        int mid = (start + end) >>> 1; // sem estouro quando start + end passa de Integer.MAX_VALUE
+        // os filhos ordenam suas metades dentro do buffer, usando 'array' como rascunho
+        ParallelMergeSort leftTask = new ParallelMergeSort(buffer, array, start, mid, false, threshold);
+        ParallelMergeSort rightTask = new ParallelMergeSort(buffer, array, mid + 1, end, false, threshold);
+
+        invokeAll(leftTask, rightTask);
+        // o merge também é dividido entre as threads, senão o último nível roda em um núcleo só
+        new ParallelMerge(buffer, start, mid, mid + 1, end, array, start, threshold, false).invoke();
+    }
 
-        invokeAll(leftTask, rightTask); 
-        merge(array, start, mid, end);
+    // Intercala src[start..mid] e src[mid+1..end] diretamente em dst[start..end]
+    private static void merge(int[] src, int[] dst, int start, int mid, int end) {
+        merge(src, start, mid, mid + 1, end, dst, start);
     }
 
-    private void merge(int[] array, int start, int mid, int end) {
-        int[] temp = new int[end - start + 1];
-        int i = start, j = mid + 1, k = 0;
+    // Intercala src[lo1..hi1] e src[lo2..hi2] em dst a partir da posição k (estável: empates ficam com a esquerda)
+    private static void merge(int[] src, int lo1, int hi1, int lo2, int hi2, int[] dst, int k) {
+        int i = lo1, j = lo2;
 
-        while (i <= mid && j <= end) {
-            if (array[i] <= array[j]) {
-                temp[k++] = array[i++];
+        while (i <= hi1 && j <= hi2) {
+            if (src[i] <= src[j]) {
+                dst[k++] = src[i++];
             } else {
-                temp[k++] = array[j++];
+                dst[k++] = src[j++];
             }
         }
 
-        while (i <= mid) temp[k++] = array[i++];
-        while (j <= end) temp[k++] = array[j++];
+        while (i <= hi1) dst[k++] = src[i++];
+        while (j <= hi2) dst[k++] = src[j++];
+    }
+
+    // Merge paralelo por dividir e conquistar: pega o meio da faixa maior, acha por busca binária
+    // a posição correspondente na outra faixa (co-ranking) e intercala as duas metades em paralelo.
+    // O caminho crítico fica O(log^2 n) em vez de O(n). Com gallop = true as folhas usam o merge
+    // com galope do NaturalMergeSort, que é mais rápido em entradas quase ordenadas.
+    static class ParallelMerge extends RecursiveAction {
+        private final int[] src;
+        private final int lo1, hi1, lo2, hi2;
+        private final int[] dst;
+        private final int k;
+        private final int threshold;
+        private final boolean gallop;
 
-        System.arraycopy(temp, 0, array, start, temp.length);
+        ParallelMerge(int[] src, int lo1, int hi1, int lo2, int hi2, int[] dst, int k, int threshold, boolean gallop) {
+            this.src = src;
+            this.lo1 = lo1;
+            this.hi1 = hi1;
+            this.lo2 = lo2;
+            this.hi2 = hi2;
+            this.dst = dst;
+            this.k = k;
+            this.threshold = threshold;
+            this.gallop = gallop;
+        }
+
+        @Override
+        protected void compute() {
+            int n1 = hi1 - lo1 + 1;
+            int n2 = hi2 - lo2 + 1;
+            if (n1 + n2 <= threshold) {
+                if (gallop) {
+                    NaturalMergeSort.gallopMerge(src, lo1, hi1, lo2, hi2, dst, k);
+                } else {
+                    merge(src, lo1, hi1, lo2, hi2, dst, k);
+                }
+                return;
+            }
+
+            int m1, m2, pos;
+            ParallelMerge leftTask, rightTask;
+            if (n1 >= n2) {
+                m1 = (lo1 + hi1) >>> 1;
+                m2 = lowerBound(src, lo2, hi2, src[m1]); // iguais da direita ficam depois do pivô
+                pos = k + (m1 - lo1) + (m2 - lo2);
+                dst[pos] = src[m1];
+                leftTask = new ParallelMerge(src, lo1, m1 - 1, lo2, m2 - 1, dst, k, threshold, gallop);
+                rightTask = new ParallelMerge(src, m1 + 1, hi1, m2, hi2, dst, pos + 1, threshold, gallop);
+            } else {
+                m2 = (lo2 + hi2) >>> 1;
+                m1 = upperBound(src, lo1, hi1, src[m2]); // iguais da esquerda ficam antes do pivô
+                pos = k + (m1 - lo1) + (m2 - lo2);
+                dst[pos] = src[m2];
+                leftTask = new ParallelMerge(src, lo1, m1 - 1, lo2, m2 - 1, dst, k, threshold, gallop);
+                rightTask = new ParallelMerge(src, m1, hi1, m2 + 1, hi2, dst, pos + 1, threshold, gallop);
+            }
+            invokeAll(leftTask, rightTask);
+        }
+
+        // primeiro índice em [lo..hi] com a[i] >= key (hi + 1 se não houver)
+        private static int lowerBound(int[] a, int lo, int hi, int key) {
+            int l = lo, h = hi + 1;
+            while (l < h) {
+                int m = (l + h) >>> 1;
+                if (a[m] < key) l = m + 1; else h = m;
+            }
+            return l;
+        }
+
+        // primeiro índice em [lo..hi] com a[i] > key (hi + 1 se não houver)
+        private static int upperBound(int[] a, int lo, int hi, int key) {
+            int l = lo, h = hi + 1;
+            while (l < h) {
+                int m = (l + h) >>> 1;
+                if (a[m] <= key) l = m + 1; else h = m;
+            }
+            return l;
+        }
+    }
+
+    // Ordena a faixa em dst; src deve ter o mesmo conteúdo na entrada e é usado como rascunho
+    private void sequentialMergeSort(int[] src, int[] dst, int start, int end) {
+        if (end - start < INSERTION_SORT_THRESHOLD) {
+            insertionSort(dst, start, end); // não desce a recursão até faixas de um elemento
+            return;
+        }
+
+        int mid = (start + end) >>> 1;
+        sequentialMergeSort(dst, src, start, mid);    // esquerda
+        sequentialMergeSort(dst, src, mid + 1, end);  //  direita
+        merge(src, dst, start, mid, end);
     }
-    private void sequentialMergeSort(int[] array, int start, int end) {
-        if (start >= end) return;
 
-        int mid = (start + end) / 2;
-        sequentialMergeSort(array, start, mid);    // esquerda
-        sequentialMergeSort(array, mid + 1, end);  //  direita
-        merge(array, start, mid, end);             
+    private static void insertionSort(int[] array, int start, int end) {
+        for (int i = start + 1; i <= end; i++) {
+            int value = array[i];
+            int j = i - 1;
+            while (j >= start && array[j] > value) {
+                array[j + 1] = array[j];
+                j--;
+            }
+            array[j + 1] = value;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,133 @@
+package trabalho1;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Radix sort LSD paralelo para chaves int, alternativa ao merge sort (sem comparações).
+// 4 passadas de 8 bits; em cada uma, cada bloco conta seus dígitos (histograma por bloco),
+// uma soma de prefixos sobre (dígito, bloco) dá a posição de escrita de cada bloco, e os blocos
+// espalham seus elementos em paralelo no buffer compartilhado. O dígito mais alto tem o bit de
+// sinal invertido, para que os negativos venham antes dos positivos.
+public class ParallelRadixSort extends RecursiveAction {
+    private static final int BITS = 8;
+    private static final int RADIX = 1 << BITS;
+    private static final int PASSES = Integer.SIZE / BITS; // número par: o resultado termina em 'array'
+    private static final int MIN_BLOCK = 16384; // abaixo disso o custo da tarefa passa o ganho
+    private static final int BLOCKS_PER_THREAD = 4;
+
+    private int[] array;
+    private int[] buffer; // um único buffer auxiliar por ordenação, como no ParallelMergeSort
+    private int start;
+    private int end;
+
+    public ParallelRadixSort(int[] array, int start, int end) {
+        this(array, new int[array.length], start, end);
+    }
+
+    // Permite reaproveitar o mesmo buffer entre várias ordenações (buffer.length deve ser > end)
+    public ParallelRadixSort(int[] array, int[] buffer, int start, int end) {
+        this.array = array;
+        this.buffer = buffer;
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+        int length = end - start + 1;
+        if (length < 2) return;
+
+        ForkJoinPool pool = getPool();
+        int parallelism = pool != null ? pool.getParallelism() : ForkJoinPool.getCommonPoolParallelism();
+        int blocks = (int) Math.max(1, Math.min((long) parallelism * BLOCKS_PER_THREAD, length / MIN_BLOCK));
+        int blockSize = (length + blocks - 1) / blocks;
+        blocks = (length + blockSize - 1) / blockSize;
+
+        int[][] counts = new int[blocks][RADIX]; // histograma de cada bloco; depois, sua posição de escrita
+        int[] src = array, dst = buffer;
+        for (int pass = 0; pass < PASSES; pass++) {
+            int shift = pass * BITS;
+            int flip = (pass == PASSES - 1) ? RADIX / 2 : 0; // inverte o bit de sinal no último dígito
+
+            BlockTask[] tasks = new BlockTask[blocks];
+            for (int b = 0; b < blocks; b++) {
+                int from = start + b * blockSize;
+                int to = Math.min(end, from + blockSize - 1);
+                tasks[b] = new BlockTask(src, dst, from, to, shift, flip, counts[b], false);
+            }
+            invokeAll(tasks);
+
+            if (!prefixSum(counts, start)) {
+                continue; // todos os elementos têm o mesmo dígito: a passada não mudaria nada
+            }
+
+            for (int b = 0; b < blocks; b++) {
+                tasks[b] = new BlockTask(src, dst, tasks[b].from, tasks[b].to, shift, flip, counts[b], true);
+            }
+            invokeAll(tasks);
+
+            int[] swap = src;
+            src = dst;
+            dst = swap;
+        }
+
+        if (src != array) { // alguma passada foi pulada e o resultado ficou no buffer
+            System.arraycopy(src, start, array, start, length);
+        }
+    }
+
+    // Transforma os histogramas em posições iniciais de escrita, na ordem (dígito, bloco),
+    // o que mantém a ordenação estável. Retorna false se só um dígito aparece nesta passada.
+    private static boolean prefixSum(int[][] counts, int start) {
+        int position = start;
+        int distinctDigits = 0;
+        for (int digit = 0; digit < RADIX; digit++) {
+            int before = position;
+            for (int[] count : counts) {
+                int c = count[digit];
+                count[digit] = position;
+                position += c;
+            }
+            if (position != before) distinctDigits++;
+        }
+        return distinctDigits > 1;
+    }
+
+    // Uma faixa contígua da entrada: conta os dígitos (scatter = false) ou espalha os elementos (scatter = true)
+    private static class BlockTask extends RecursiveAction {
+        private final int[] src;
+        private final int[] dst;
+        private final int from;
+        private final int to;
+        private final int shift;
+        private final int flip;
+        private final int[] count;
+        private final boolean scatter;
+
+        BlockTask(int[] src, int[] dst, int from, int to, int shift, int flip, int[] count, boolean scatter) {
+            this.src = src;
+            this.dst = dst;
+            this.from = from;
+            this.to = to;
+            this.shift = shift;
+            this.flip = flip;
+            this.count = count;
+            this.scatter = scatter;
+        }
+
+        @Override
+        protected void compute() {
+            if (scatter) {
+                for (int i = from; i <= to; i++) {
+                    int value = src[i];
+                    dst[count[((value >>> shift) & (RADIX - 1)) ^ flip]++] = value;
+                }
+            } else {
+                Arrays.fill(count, 0);
+                for (int i = from; i <= to; i++) {
+                    count[((src[i] >>> shift) & (RADIX - 1)) ^ flip]++;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package trabalho1;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+// Estudo de escalabilidade: varia distribuição da entrada, tamanho do array e paralelismo do
+// ForkJoinPool e gera um CSV com tempo, vazão, speedup e eficiência paralela.
+// Escalabilidade forte (padrão): tamanho fixo, speedup = T(1) / T(p).
+// Escalabilidade fraca (--fraca): tamanho cresce com as threads (tamanho * p), speedup = p * T(1) / T(p).
+// A base é o primeiro valor de --threads (normalmente 1); eficiência = speedup / (p / base).
+//
+// Uso: java trabalho1.ScalabilityStudy [--algoritmo=merge|radix|natural]
+//          [--distribuicoes=uniforme,ordenado,...] [--tamanhos=1000,1000000] [--threads=1,2,4]
+//          [--repeticoes=3] [--fraca] [--saida=resultado.csv]
+public class ScalabilityStudy {
+    private static final String[] DISTRIBUTIONS =
+            {"uniforme", "ordenado", "invertido", "poucos-unicos", "zipf", "serrote", "organ-pipe"};
+    private static final long SEED = 42; // mesma entrada em todas as execuções
+
+    public static void main(String[] args) throws IOException {
+        String algorithm = "merge";
+        String[] distributions = DISTRIBUTIONS;
+        int[] sizes = {1_000, 10_000, 100_000, 1_000_000, 10_000_000};
+        int[] threads = defaultThreads(Runtime.getRuntime().availableProcessors());
+        int repetitions = 3;
+        boolean weakScaling = false;
+        String output = null;
+
+        for (String arg : args) {
+            if (arg.startsWith("--algoritmo=")) {
+                algorithm = value(arg);
+            } else if (arg.startsWith("--distribuicoes=")) {
+                distributions = value(arg).split(",");
+            } else if (arg.startsWith("--tamanhos=")) {
+                sizes = parseInts(value(arg));
+            } else if (arg.startsWith("--threads=")) {
+                threads = parseInts(value(arg));
+            } else if (arg.startsWith("--repeticoes=")) {
+                repetitions = Integer.parseInt(value(arg));
+            } else if (arg.equals("--fraca")) {
+                weakScaling = true;
+            } else if (arg.startsWith("--saida=")) {
+                output = value(arg);
+            } else {
+                throw new IllegalArgumentException("Argumento desconhecido: " + arg);
+            }
+        }
+
+        PrintWriter csv = output != null ? new PrintWriter(new FileWriter(output)) : new PrintWriter(System.out, true);
+        try {
+            csv.println("algoritmo,distribuicao,tamanho,threads,tempo_ms,elementos_por_s,speedup,eficiencia");
+            for (String distribution : distributions) {
+                for (int size : sizes) {
+                    int base = threads[0];
+                    double baseTime = 0;
+                    for (int p : threads) {
+                        int n = weakScaling ? Math.toIntExact((long) size * p) : size;
+                        int[] original = generate(distribution, n);
+                        double time = measure(algorithm, original, p, repetitions);
+                        if (p == base) baseTime = time;
+
+                        double scale = (double) p / base;
+                        double speedup = weakScaling ? scale * baseTime / time : baseTime / time;
+                        double efficiency = speedup / scale;
+                        double throughput = n / (time / 1000.0);
+                        csv.printf("%s,%s,%d,%d,%.3f,%.0f,%.3f,%.3f%n",
+                                algorithm, distribution, n, p, time, throughput, speedup, efficiency);
+                        csv.flush();
+                    }
+                }
+            }
+        } finally {
+            if (output != null) csv.close(); // System.out não é fechado: só o arquivo de --saida
+            else csv.flush();
+        }
+    }
+
+    // Mediana (em ms) de 'repetitions' execuções, após uma execução de aquecimento do JIT
+    private static double measure(String algorithm, int[] original, int parallelism, int repetitions) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            int[] array = new int[original.length];
+            double[] times = new double[repetitions];
+            for (int r = -1; r < repetitions; r++) {
+                System.arraycopy(original, 0, array, 0, original.length);
+                long begin = System.nanoTime();
+                pool.invoke(MergeSortComparison.createParallelSort(algorithm, array));
+                long elapsed = System.nanoTime() - begin;
+                if (r >= 0) times[r] = elapsed / 1_000_000.0;
+            }
+            if (!isSorted(array)) {
+                throw new IllegalStateException("Resultado não ordenado: " + algorithm + ", " + original.length + " elementos");
+            }
+            Arrays.sort(times);
+            return times[repetitions / 2];
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static int[] generate(String distribution, int size) {
+        Random rand = new Random(SEED);
+        int[] array = new int[size];
+        switch (distribution) {
+            case "uniforme":
+                for (int i = 0; i < size; i++) array[i] = rand.nextInt();
+                break;
+            case "ordenado":
+                for (int i = 0; i < size; i++) array[i] = i;
+                break;
+            case "invertido":
+                for (int i = 0; i < size; i++) array[i] = size - i;
+                break;
+            case "poucos-unicos": // 16 valores distintos
+                for (int i = 0; i < size; i++) array[i] = rand.nextInt(16);
+                break;
+            case "zipf":
+                generateZipf(array, rand);
+                break;
+            case "serrote": // sequências crescentes de ~sqrt(n) elementos
+                int tooth = Math.max(2, (int) Math.sqrt(size));
+                for (int i = 0; i < size; i++) array[i] = i % tooth;
+                break;
+            case "organ-pipe": // cresce até o meio e decresce depois
+                for (int i = 0; i < size; i++) array[i] = Math.min(i, size - 1 - i);
+                break;
+            default:
+                throw new IllegalArgumentException("Distribuição desconhecida: " + distribution
+                        + " (use " + String.join(", ", DISTRIBUTIONS) + ")");
+        }
+        return array;
+    }
+
+    // Zipf com expoente 1 sobre até 1M valores: o valor de rank k aparece com probabilidade ~ 1/k
+    private static void generateZipf(int[] array, Random rand) {
+        int values = Math.max(1, Math.min(array.length, 1_000_000));
+        double[] cumulative = new double[values];
+        double sum = 0;
+        for (int k = 0; k < values; k++) {
+            sum += 1.0 / (k + 1);
+            cumulative[k] = sum;
+        }
+        for (int i = 0; i < array.length; i++) {
+            int rank = Arrays.binarySearch(cumulative, rand.nextDouble() * sum);
+            array[i] = rank >= 0 ? rank : -rank - 1;
+        }
+    }
+
+    // 1, 2, 4, ... até o número de processadores (incluindo ele)
+    private static int[] defaultThreads(int processors) {
+        List<Integer> threads = new ArrayList<>();
+        for (int p = 1; p < processors; p *= 2) threads.add(p);
+        threads.add(processors);
+        return threads.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static String value(String arg) {
+        return arg.substring(arg.indexOf('=') + 1);
+    }
+
+    private static int[] parseInts(String list) {
+        return Arrays.stream(list.split(",")).mapToInt(s -> (int) Double.parseDouble(s.trim())).toArray();
+    }
+
+    private static boolean isSorted(int[] array) {
+        for (int i = 0; i < array.length - 1; i++) {
+            if (array[i] > array[i + 1]) return false;
+        }
+        return true;
+    }
+}
@@ -1,33 +1,140 @@
 package trabalho1;
 import java.util.Arrays;
 
+// Merge sort iterativo (bottom-up): um único buffer auxiliar para a ordenação inteira, alternando
+// origem e destino a cada passada (ping-pong), sem recursão e sem copiar subarrays.
+// Blocos de RUN elementos são ordenados primeiro com insertion sort; depois cada passada dobra a
+// largura das runs (ou quadruplica, no modo de merge de 4 vias, que faz metade das passadas pela memória).
+// Larguras e passos são calculados em long (ou limitados a n - lo): com n perto de 2^31, 2 * width e 4 * width
+// estourariam o int.
 public class SequentialMergeSort {
+    private static final int RUN = 32;
+
+    private final boolean fourWay;
+
+    public SequentialMergeSort() {
+        this(false);
+    }
+
+    public SequentialMergeSort(boolean fourWay) {
+        this.fourWay = fourWay;
+    }
 
     public void mergeSort(int[] array) {
-        if (array.length > 1) {
-            int mid = array.length / 2;
-            int[] left = Arrays.copyOfRange(array, 0, mid);
-            int[] right = Arrays.copyOfRange(array, mid, array.length);
-            mergeSort(left);
-            mergeSort(right);
-            merge(array, left, right);
+        int n = array.length;
+        if (n < 2) return;
+
+        for (int lo = 0, hi; lo < n; lo = hi) {
+            hi = lo + Math.min(RUN, n - lo);
+            insertionSort(array, lo, hi);
+        }
+
+        int[] src = array;
+        int[] dst = new int[n]; // única alocação da ordenação
+        int[] pos = new int[4];
+        int[] ends = new int[4];
+        for (long width = RUN; width < n; width *= fourWay ? 4 : 2) {
+            if (fourWay) {
+                for (long lo = 0; lo < n; lo += 4 * width) {
+                    merge4(src, dst, (int) lo, (int) width, n, pos, ends);
+                }
+            } else {
+                for (long lo = 0; lo < n; lo += 2 * width) {
+                    int mid = (int) Math.min(lo + width, n);
+                    merge(src, (int) lo, mid, mid, (int) Math.min(lo + 2 * width, n), dst, (int) lo);
+                }
+            }
+            int[] swap = src;
+            src = dst;
+            dst = swap;
+        }
+
+        if (src != array) {
+            System.arraycopy(src, 0, array, 0, n);
         }
     }
 
-    private void merge(int[] result, int[] left, int[] right) {
-        int i = 0, j = 0, k = 0;
-        while (i < left.length && j < right.length) {
-            if (left[i] <= right[j]) {
-                result[k++] = left[i++];
+    // Intercala src[i..leftEnd-1] e src[j..rightEnd-1] em dst a partir de k
+    private void merge(int[] src, int i, int leftEnd, int j, int rightEnd, int[] dst, int k) {
+        while (i < leftEnd && j < rightEnd) {
+            if (src[i] <= src[j]) {
+                dst[k++] = src[i++];
             } else {
-                result[k++] = right[j++];
+                dst[k++] = src[j++];
             }
         }
-        while (i < left.length) {
-            result[k++] = left[i++];
+        while (i < leftEnd) {
+            dst[k++] = src[i++];
+        }
+        while (j < rightEnd) {
+            dst[k++] = src[j++];
         }
-        while (j < right.length) {
-            result[k++] = right[j++];
+    }
+
+    // Intercala até 4 runs consecutivas de 'width' elementos a partir de lo em dst (estável)
+    private void merge4(int[] src, int[] dst, int lo, int width, int n, int[] pos, int[] ends) {
+        int i0 = lo, e0 = i0 + Math.min(width, n - i0);
+        int i1 = e0, e1 = i1 + Math.min(width, n - i1);
+        int i2 = e1, e2 = i2 + Math.min(width, n - i2);
+        int i3 = e2, e3 = i3 + Math.min(width, n - i3);
+        int k = lo;
+
+        // torneio de dois níveis enquanto as quatro runs têm elementos; empates ficam com a run anterior
+        while (i0 < e0 && i1 < e1 && i2 < e2 && i3 < e3) {
+            int a = src[i0], b = src[i1], c = src[i2], d = src[i3];
+            if (a <= b) {
+                if (c <= d) {
+                    if (a <= c) { dst[k++] = a; i0++; } else { dst[k++] = c; i2++; }
+                } else {
+                    if (a <= d) { dst[k++] = a; i0++; } else { dst[k++] = d; i3++; }
+                }
+            } else {
+                if (c <= d) {
+                    if (b <= c) { dst[k++] = b; i1++; } else { dst[k++] = c; i2++; }
+                } else {
+                    if (b <= d) { dst[k++] = b; i1++; } else { dst[k++] = d; i3++; }
+                }
+            }
+        }
+
+        // alguma run acabou: continua com as que sobraram (na mesma ordem, para manter a estabilidade)
+        pos[0] = i0; pos[1] = i1; pos[2] = i2; pos[3] = i3;
+        ends[0] = e0; ends[1] = e1; ends[2] = e2; ends[3] = e3;
+        int active;
+        while (true) {
+            active = 0;
+            for (int r = 0; r < 4; r++) {
+                if (pos[r] < ends[r]) {
+                    pos[active] = pos[r];
+                    ends[active] = ends[r];
+                    active++;
+                }
+            }
+            if (active < 3) break;
+            // três runs: menor cabeça, empates ficam com a run anterior
+            while (pos[0] < ends[0] && pos[1] < ends[1] && pos[2] < ends[2]) {
+                int best = src[pos[0]] <= src[pos[1]] ? 0 : 1;
+                if (src[pos[2]] < src[pos[best]]) best = 2;
+                dst[k++] = src[pos[best]++];
+            }
+            for (int r = active; r < 4; r++) ends[r] = pos[r] = 0;
+        }
+        if (active == 2) {
+            merge(src, pos[0], ends[0], pos[1], ends[1], dst, k);
+        } else if (active == 1) {
+            System.arraycopy(src, pos[0], dst, k, ends[0] - pos[0]);
+        }
+    }
+
+    private void insertionSort(int[] array, int lo, int hi) {
+        for (int i = lo + 1; i < hi; i++) {
+            int value = array[i];
+            int j = i - 1;
+            while (j >= lo && array[j] > value) {
+                array[j + 1] = array[j];
+                j--;
+            }
+            array[j + 1] = value;
         }
     }
 
@@ -37,4 +144,4 @@ public class SequentialMergeSort {
         sorter.mergeSort(array);
         System.out.println("Sorted array: " + Arrays.toString(array));
     }
-}
\ No newline at end of file
+}
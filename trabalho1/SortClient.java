@@ -0,0 +1,101 @@
+package trabalho1;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Random;
+
+// Cliente de teste do SortServer: envia 'pedidos' arrays aleatórios de n elementos na mesma conexão,
+// confere a resposta e mostra a vazão (MB/s enviados + recebidos).
+//
+// Uso: java trabalho1.SortClient [elementos] [pedidos] [host] [porta]
+public class SortClient {
+    private static final int BLOCK_BYTES = 256 * 1024;
+
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? (int) Double.parseDouble(args[0]) : 10_000_000;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        String host = args.length > 2 ? args[2] : "localhost";
+        int port = args.length > 3 ? Integer.parseInt(args[3]) : 12350;
+
+        Random rand = new Random();
+        int[] array = new int[size];
+        int[] sorted = new int[size];
+        ByteBuffer block = ByteBuffer.allocateDirect(BLOCK_BYTES);
+
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port))) {
+            channel.socket().setTcpNoDelay(true);
+            for (int r = 0; r < requests; r++) {
+                for (int i = 0; i < size; i++) {
+                    array[i] = rand.nextInt();
+                }
+
+                long begin = System.nanoTime();
+                block.clear();
+                block.putInt(size).flip();
+                writeFully(channel, block);
+                writeInts(channel, block, array);
+
+                block.clear().limit(Integer.BYTES);
+                readFully(channel, block);
+                block.flip();
+                int n = block.getInt();
+                if (n < 0) {
+                    System.out.println("Pedido recusado pelo servidor (tamanho acima do limite)");
+                    return;
+                }
+                readInts(channel, block, sorted, n);
+                long elapsed = System.nanoTime() - begin;
+
+                double megabytes = 2.0 * size * Integer.BYTES / (1024 * 1024);
+                System.out.printf("Pedido %d: %d elementos em %.1f ms (%.1f MB/s), ordenado: %b%n",
+                        r + 1, n, elapsed / 1e6, megabytes / (elapsed / 1e9), n == size && isSorted(sorted, n));
+            }
+        }
+    }
+
+    private static void writeInts(SocketChannel channel, ByteBuffer block, int[] array) throws IOException {
+        IntBuffer ints = block.clear().asIntBuffer();
+        for (int i = 0; i < array.length; ) {
+            int n = Math.min(ints.capacity(), array.length - i);
+            ints.clear();
+            ints.put(array, i, n);
+            block.clear().limit(n * Integer.BYTES);
+            writeFully(channel, block);
+            i += n;
+        }
+    }
+
+    private static void readInts(SocketChannel channel, ByteBuffer block, int[] array, int count) throws IOException {
+        IntBuffer ints = block.clear().asIntBuffer();
+        for (int i = 0; i < count; ) {
+            int n = Math.min(ints.capacity(), count - i);
+            block.clear().limit(n * Integer.BYTES);
+            readFully(channel, block);
+            ints.clear();
+            ints.get(array, i, n);
+            i += n;
+        }
+    }
+
+    private static void writeFully(SocketChannel channel, ByteBuffer block) throws IOException {
+        while (block.hasRemaining()) {
+            channel.write(block);
+        }
+    }
+
+    private static void readFully(SocketChannel channel, ByteBuffer block) throws IOException {
+        while (block.hasRemaining()) {
+            if (channel.read(block) < 0) throw new EOFException("Servidor fechou a conexão");
+        }
+    }
+
+    private static boolean isSorted(int[] array, int n) {
+        for (int i = 0; i < n - 1; i++) {
+            if (array[i] > array[i + 1]) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,239 @@
+package trabalho1;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+
+// Servidor de ordenação por TCP, no estilo do exerciciosTCP.TCPServer (uma thread por conexão).
+// Protocolo binário (big-endian): o cliente envia um int com a quantidade n seguido de n ints e
+// recebe de volta n seguido dos n ints ordenados (ou -1 se o pedido foi recusado). Vários pedidos
+// podem ser enviados na mesma conexão.
+//
+// - Leitura por SocketChannel direto para o int[] em blocos (IntBuffer), sem parsing por elemento.
+// - Todos os pedidos dividem o mesmo ForkJoinPool; um semáforo limita os elementos em processamento
+//   (controle de admissão), e pedidos maiores que o limite são recusados.
+// - As duas metades são ordenadas com o ParallelMergeSort e o merge final é dividido em segmentos
+//   da saída (merge path); cada segmento é enviado assim que fica pronto, na ordem, enquanto os
+//   seguintes ainda estão sendo intercalados.
+//
+// Uso: java trabalho1.SortServer [porta] [memoriaMB]
+public class SortServer {
+    private static final int DEFAULT_PORT = 12350;
+    private static final int BLOCK_BYTES = 256 * 1024;
+    private static final int SEGMENT_SIZE = 1 << 18; // elementos por segmento do merge final
+
+    static final ForkJoinPool pool = new ForkJoinPool();
+    static Semaphore admission; // em elementos; cada elemento usa 8 bytes (array + buffer)
+    static int maxElements;
+
+    public static void main(String[] args) {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        long memory = (args.length > 1 ? Long.parseLong(args[1]) : 1024) * 1024 * 1024;
+        maxElements = (int) Math.min(Integer.MAX_VALUE, memory / (2 * Integer.BYTES));
+        admission = new Semaphore(maxElements, true);
+
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            serverChannel.bind(new InetSocketAddress(port));
+            System.out.println("Servidor de ordenação iniciado na porta " + port
+                    + " (" + pool.getParallelism() + " threads, até " + maxElements + " elementos em processamento)");
+
+            while (true) {
+                SocketChannel clientChannel = serverChannel.accept();
+                new SortHandler(clientChannel).start();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    static class SortHandler extends Thread {
+        private final SocketChannel channel;
+        private final ByteBuffer block = ByteBuffer.allocateDirect(BLOCK_BYTES); // big-endian por padrão
+
+        public SortHandler(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        public void run() {
+            try {
+                channel.socket().setTcpNoDelay(true);
+                while (true) {
+                    int n;
+                    try {
+                        n = readHeader();
+                    } catch (EOFException e) {
+                        break; // cliente terminou
+                    }
+                    if (n < 0 || n > maxElements) {
+                        skip((long) Math.max(0, n) * Integer.BYTES);
+                        writeHeader(-1);
+                        System.out.println("Pedido de " + n + " elementos recusado (" + channel.getRemoteAddress() + ")");
+                        continue;
+                    }
+
+                    admission.acquire(n);
+                    try {
+                        int[] array = new int[n];
+                        readInts(array);
+                        sortAndStream(array);
+                    } finally {
+                        admission.release(n);
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Erro na conexão: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        private void sortAndStream(int[] array) throws IOException {
+            int n = array.length;
+            writeHeader(n);
+            if (n == 0) return;
+
+            int[] buffer = new int[n];
+            int mid = (n - 1) >>> 1;
+            ParallelMergeSort left = new ParallelMergeSort(array, buffer, 0, mid);
+            ParallelMergeSort right = new ParallelMergeSort(array, buffer, mid + 1, n - 1);
+            pool.execute(left);
+            pool.execute(right);
+            left.join();
+            right.join();
+
+            // merge final em segmentos da saída; o buffer já está livre e recebe o resultado
+            int segments = (n + SEGMENT_SIZE - 1) / SEGMENT_SIZE;
+            ForkJoinTask<?>[] merges = new ForkJoinTask<?>[segments];
+            for (int s = 0; s < segments; s++) {
+                int from = s * SEGMENT_SIZE;
+                int to = Math.min(n, from + SEGMENT_SIZE);
+                merges[s] = pool.submit(new SegmentMerge(array, mid, n - 1, buffer, from, to));
+            }
+            for (int s = 0; s < segments; s++) {
+                merges[s].join();
+                int from = s * SEGMENT_SIZE;
+                writeInts(buffer, from, Math.min(n, from + SEGMENT_SIZE) - from);
+            }
+        }
+
+        private int readHeader() throws IOException {
+            block.clear().limit(Integer.BYTES);
+            readFully();
+            block.flip();
+            return block.getInt();
+        }
+
+        private void readInts(int[] array) throws IOException {
+            IntBuffer ints = block.clear().asIntBuffer();
+            for (int i = 0; i < array.length; ) {
+                int count = Math.min(ints.capacity(), array.length - i);
+                block.clear().limit(count * Integer.BYTES);
+                readFully();
+                ints.clear();
+                ints.get(array, i, count);
+                i += count;
+            }
+        }
+
+        private void skip(long bytes) throws IOException {
+            while (bytes > 0) {
+                block.clear().limit((int) Math.min(block.capacity(), bytes));
+                readFully();
+                bytes -= block.limit();
+            }
+        }
+
+        private void readFully() throws IOException {
+            while (block.hasRemaining()) {
+                if (channel.read(block) < 0) throw new EOFException();
+            }
+        }
+
+        private void writeHeader(int n) throws IOException {
+            block.clear();
+            block.putInt(n).flip();
+            writeFully();
+        }
+
+        private void writeInts(int[] array, int from, int count) throws IOException {
+            IntBuffer ints = block.clear().asIntBuffer();
+            for (int i = from; i < from + count; ) {
+                int n = Math.min(ints.capacity(), from + count - i);
+                ints.clear();
+                ints.put(array, i, n);
+                block.clear().limit(n * Integer.BYTES);
+                writeFully();
+                i += n;
+            }
+        }
+
+        private void writeFully() throws IOException {
+            while (block.hasRemaining()) {
+                channel.write(block);
+            }
+        }
+    }
+
+    // Produz out[from..to-1] do merge de src[0..mid] com src[mid+1..end]. O ponto de partida em cada
+    // metade vem de uma busca binária sobre a diagonal 'from' (merge path), então segmentos são independentes.
+    static class SegmentMerge extends RecursiveAction {
+        private final int[] src;
+        private final int mid;
+        private final int end;
+        private final int[] out;
+        private final int from;
+        private final int to;
+
+        SegmentMerge(int[] src, int mid, int end, int[] out, int from, int to) {
+            this.src = src;
+            this.mid = mid;
+            this.end = end;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            int i = coRank(from);
+            int j = mid + 1 + (from - i);
+            for (int k = from; k < to; k++) {
+                if (j > end || (i <= mid && src[i] <= src[j])) {
+                    out[k] = src[i++];
+                } else {
+                    out[k] = src[j++];
+                }
+            }
+        }
+
+        // quantos elementos da metade esquerda estão entre os 'rank' primeiros da saída (estável)
+        private int coRank(int rank) {
+            int leftSize = mid + 1;
+            int rightSize = end - mid;
+            int lo = Math.max(0, rank - rightSize), hi = Math.min(rank, leftSize);
+            while (lo < hi) {
+                int i = (lo + hi) >>> 1; // candidatos: i da esquerda, rank - i da direita
+                int j = rank - i;
+                if (src[i] <= src[mid + j]) { // src[i] vem antes do (j+1)-ésimo da direita: precisa de mais da esquerda
+                    lo = i + 1;
+                } else {
+                    hi = i;
+                }
+            }
+            return lo;
+        }
+    }
+}
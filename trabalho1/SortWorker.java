@@ -0,0 +1,63 @@
+package trabalho1;
+import java.io.*;
+import java.net.*;
+import java.util.concurrent.ForkJoinPool;
+
+// Nó trabalhador da ordenação distribuída (DistributedSampleSort), no estilo do exerciciosTCP.TCPServer:
+// uma thread por conexão. Cada conexão recebe uma partição (quantidade + inteiros), ordena com o
+// ParallelMergeSort no pool compartilhado e devolve o tempo de ordenação (ns) seguido da partição ordenada.
+public class SortWorker {
+    static final ForkJoinPool pool = new ForkJoinPool();
+
+    public static void main(String[] args) {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 13000;
+        try (ServerSocket serverSocket = new ServerSocket(port)) {
+            System.out.println("SortWorker iniciado na porta " + port + " (" + pool.getParallelism() + " threads)");
+
+            while (true) {
+                Socket clientSocket = serverSocket.accept();
+                new WorkerHandler(clientSocket).start();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    static class WorkerHandler extends Thread {
+        private final Socket clientSocket;
+
+        public WorkerHandler(Socket socket) {
+            this.clientSocket = socket;
+        }
+
+        public void run() {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(clientSocket.getInputStream(), IntStreams.BLOCK_BYTES));
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(clientSocket.getOutputStream(), IntStreams.BLOCK_BYTES))) {
+
+                int[] partition = IntStreams.readInts(in);
+
+                long begin = System.nanoTime();
+                if (partition.length > 1) {
+                    pool.invoke(new ParallelMergeSort(partition, 0, partition.length - 1));
+                }
+                long sortNanos = System.nanoTime() - begin;
+
+                out.writeLong(sortNanos);
+                IntStreams.writeInts(out, partition, 0, partition.length);
+                out.flush();
+                System.out.println("Partição de " + partition.length + " elementos ordenada para " + clientSocket.getInetAddress());
+
+            } catch (EOFException e) {
+                // conexão fechada sem partição (ex.: o coordenador testando se o trabalhador já subiu)
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                try {
+                    clientSocket.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package trabalho1.jmh;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import trabalho1.ParallelMergeSort;
+import trabalho1.SequentialMergeSort;
+
+// Benchmark JMH dos algoritmos do trabalho1, com Arrays.sort e Arrays.parallelSort como referência.
+// Diferente do MergeSortComparison, cada medida tem aquecimento, vários forks e intervalo de erro.
+// Rodar com -prof gc para ver a taxa de alocação (ver README).
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 3, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class SortBenchmark {
+
+    @Param({"100000", "1000000", "10000000"})
+    private int size;
+
+    @Param({"1", "2", "4", "8"})
+    private int parallelism;
+
+    private int[] original; // mesma entrada (semente fixa) para todos os algoritmos
+    private int[] array;    // cópia ordenada em cada invocação
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        Random rand = new Random(42);
+        original = new int[size];
+        for (int i = 0; i < size; i++) {
+            original[i] = rand.nextInt();
+        }
+        array = new int[size];
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    // Restaura a entrada desordenada sem alocar, para não poluir o -prof gc
+    @Setup(Level.Invocation)
+    public void setupInvocation() {
+        System.arraycopy(original, 0, array, 0, size);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public int[] sequentialMergeSort() {
+        new SequentialMergeSort().mergeSort(array);
+        return array;
+    }
+
+    @Benchmark
+    public int[] parallelMergeSort() {
+        pool.invoke(new ParallelMergeSort(array, 0, array.length - 1));
+        return array;
+    }
+
+    @Benchmark
+    public int[] arraysSort() {
+        Arrays.sort(array);
+        return array;
+    }
+
+    // Chamado de dentro do pool para que as subtarefas do parallelSort rodem nele e não no common pool
+    @Benchmark
+    public int[] arraysParallelSort() {
+        pool.submit(() -> Arrays.parallelSort(array)).join();
+        return array;
+    }
+}